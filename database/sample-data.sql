@@ -124,6 +124,9 @@ INSERT INTO user_deck_history (user_id, deck_id, score, correct_answers, last_up
 -- History Facts deck (user's public deck) - struggling
 (3, 3, 1, 1, '2024-01-16 08:30:00');
 
+-- Cards above were inserted directly, so fill in the maintained counts
+UPDATE deck SET card_count = (SELECT count(*) FROM card c WHERE c.deck_id = deck.deck_id);
+
 -- Reset sequences to ensure new registrations work properly
 SELECT setval('users_user_id_seq', (SELECT MAX(user_id) FROM users));
 SELECT setval('deck_deck_id_seq', (SELECT MAX(deck_id) FROM deck));
@@ -10,6 +10,9 @@ CREATE TABLE users (
 	CONSTRAINT PK_user PRIMARY KEY (user_id)
 );
 
+/* logins and ownership checks look users up case-insensitively */
+CREATE UNIQUE INDEX ix_users_username_lower ON users (lower(username));
+
 CREATE TABLE deck (
 	deck_id serial NOT NULL,
 	deck_status int NOT NULL, /* 1 private is default 2 pending or 3 approved */
@@ -17,10 +20,20 @@ CREATE TABLE deck (
 	deck_desc varchar NOT NULL,
 	owner_id int NOT NULL,
 	genre varchar NOT NULL, /*hardcoded 5-10 subjects in vue */
+	card_count int NOT NULL DEFAULT 0, /* kept in step with card by JdbcCardDao/JdbcDeckDao */
+	version bigint NOT NULL DEFAULT 1, /* bumped by every deck or card write; the ETag of the deck and its cards */
+	/* GET /api/search; generated, so every insert and update from the DAOs keeps it current */
+	search_vector tsvector GENERATED ALWAYS AS (
+		setweight(to_tsvector('english', deck_name), 'A') || setweight(to_tsvector('english', deck_desc), 'B')) STORED,
 	CONSTRAINT pk_deck_id PRIMARY KEY (deck_id),
 	CONSTRAINT fk_owner_id FOREIGN KEY (owner_id) REFERENCES users(user_id)
 );
 
+/* keyset pages of the public catalog, with and without a genre filter */
+CREATE INDEX ix_deck_status_genre_id ON deck (deck_status, genre, deck_id);
+CREATE INDEX ix_deck_status_id ON deck (deck_status, deck_id);
+CREATE INDEX ix_deck_search ON deck USING GIN (search_vector);
+
 CREATE TABLE card (
 	card_id serial NOT NULL,
 	question varchar NOT NULL,
@@ -28,10 +41,16 @@ CREATE TABLE card (
 	image_url varchar,
 	deck_id int NOT NULL,
 	/* order_num/index_num */
+	search_vector tsvector GENERATED ALWAYS AS (
+		setweight(to_tsvector('english', question), 'A') || setweight(to_tsvector('english', answer), 'B')) STORED,
 	CONSTRAINT pk_card_id PRIMARY KEY (card_id),
-	CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+	CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
 );
 
+/* card lists, and the cascade when a deck is deleted */
+CREATE INDEX ix_card_deck_id ON card (deck_id);
+CREATE INDEX ix_card_search ON card USING GIN (search_vector);
+
 CREATE TABLE user_deck_history (
 	user_id int NOT NULL,
 	deck_id int NOT NULL,
@@ -40,8 +59,10 @@ CREATE TABLE user_deck_history (
 	last_updated timestamp DEFAULT CURRENT_TIMESTAMP,
 	CONSTRAINT pk_user_deck_id PRIMARY KEY (user_id, deck_id),
 	CONSTRAINT fk_user_id FOREIGN KEY (user_id) REFERENCES users(user_id),
-	CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+	CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
  );
 
+CREATE INDEX ix_user_deck_history_deck_id ON user_deck_history (deck_id);
+
 COMMIT TRANSACTION;
 
@@ -0,0 +1,113 @@
+package flashcards.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import flashcards.dao.SqlDialect;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory H2 database in PostgreSQL mode with bench-schema.sql loaded, behind the same
+ * Hikari pool the application uses. Each benchmark state opens its own named database.
+ *
+ * With -Dbench.url=jdbc:postgresql://... (and -Dbench.username, -Dbench.password, defaulting to
+ * the application's) each state gets its own schema in that PostgreSQL database instead, with
+ * the indexes H2 cannot build, and drops it again on close. Pass the properties to the forked
+ * JVMs with -Djmh.args="-jvmArgsAppend -Dbench.url=...".
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    //hash of "password", as in the test data
+    static final String PASSWORD_HASH = "$2a$08$UkVvwpULis18S19S5pZFn.YHPZt3oaqHZnDwqbCW9pft6uFtkXKDC";
+
+    //what bench-schema.sql leaves out because H2 cannot build it, as in database/schema.sql
+    private static final String[] POSTGRES_ONLY = {
+            "CREATE UNIQUE INDEX ix_users_username_lower ON users (lower(username))"
+    };
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+    private final String schema;
+
+    BenchmarkDatabase(String name) {
+        BenchmarkLogging.quiet();
+        String url = System.getProperty("bench.url");
+        dataSource = new HikariDataSource();
+        if (url == null) {
+            schema = null;
+            dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+        } else {
+            schema = "bench_" + name;
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(System.getProperty("bench.username", "final_capstone_appuser"));
+            dataSource.setPassword(System.getProperty("bench.password", "finalcapstone"));
+            dataSource.setSchema(schema);
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        dialect = new SqlDialect(dataSource.getJdbcUrl());
+        if (schema != null) {
+            jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+            jdbcTemplate.execute("CREATE SCHEMA " + schema);
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("bench-schema.sql")).execute(dataSource);
+        if (schema != null) {
+            jdbcTemplate.batchUpdate(POSTGRES_ONLY);
+        }
+    }
+
+    JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    SqlDialect dialect() {
+        return dialect;
+    }
+
+    //users are named user1..userN with ids 1..N
+    void seedUsers(int count) {
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 1; i <= count; i++) {
+            batch.add(new Object[]{"user" + i, PASSWORD_HASH, i == 1 ? "ROLE_ADMIN" : "ROLE_USER"});
+            if (batch.size() == SEED_BATCH_SIZE || i == count) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (username, password_hash, role) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    //decks 1..count owned round-robin by users 1..owners, each with cardsPerDeck cards; status cycles private, unlisted, public
+    void seedDecks(int count, int owners, int cardsPerDeck) {
+        List<Object[]> decks = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            decks.add(new Object[]{i % 3 + 1, "Deck number " + i, "A deck for benchmarking", (i - 1) % owners + 1, "Science", cardsPerDeck});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO deck (deck_status, deck_name, deck_desc, owner_id, genre, card_count) VALUES (?, ?, ?, ?, ?, ?)", decks);
+
+        List<Object[]> cards = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int deck = 1; deck <= count; deck++) {
+            for (int card = 1; card <= cardsPerDeck; card++) {
+                cards.add(new Object[]{"Question " + card + " of deck " + deck + "?", "Answer " + card, deck});
+                if (cards.size() == SEED_BATCH_SIZE) {
+                    jdbcTemplate.batchUpdate("INSERT INTO card (question, answer, deck_id) VALUES (?, ?, ?)", cards);
+                    cards.clear();
+                }
+            }
+        }
+        if (!cards.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO card (question, answer, deck_id) VALUES (?, ?, ?)", cards);
+        }
+    }
+
+    @Override
+    public void close() {
+        jdbcTemplate.execute(schema == null ? "SHUTDOWN" : "DROP SCHEMA " + schema + " CASCADE");
+        dataSource.close();
+    }
+}
@@ -0,0 +1,17 @@
+package flashcards.bench;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outside Spring Boot logback defaults to DEBUG, which would swamp the benchmark output.
+ */
+final class BenchmarkLogging {
+
+    private BenchmarkLogging() {}
+
+    static void quiet() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
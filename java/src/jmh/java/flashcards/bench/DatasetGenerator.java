@@ -0,0 +1,455 @@
+package flashcards.bench;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Bulk-loads a synthetic data set of users, decks, cards and study history, for measuring
+ * the DAOs and the report query on realistic volumes. Postgres is loaded with COPY, H2 with
+ * JDBC batches. The same seed and volumes always produce the same rows; each table draws from
+ * its own random stream, so changing the card volume does not change the users or decks.
+ *
+ * Popularity is skewed with a power law: a few users own most decks, a few decks hold most
+ * cards and get most of the study history, and the UI genres are far from evenly used.
+ * Popular decks and users are spread over the id range rather than bunched at the start.
+ *
+ * Run with
+ *   mvn -Pjmh test-compile exec:java@generate \
+ *       -Dgenerate.args="--users=1000000 --decks=5000000 --cards=200000000 --history=20000000 --truncate=true"
+ * Options (defaults in brackets): --url [jdbc:postgresql://localhost:5432/final_capstone],
+ * --username, --password [the application's], --schema [none; a classpath: or file: script run
+ * first, e.g. file:../database/schema.sql], --users [10000], --decks [50000], --cards [1000000],
+ * --history [200000], --skew [1.1, the power-law exponent], --seed [42], --truncate [false].
+ * The tables must be empty unless --truncate=true. Every user's password is "password".
+ */
+public final class DatasetGenerator {
+
+    //the UI's genres, most used first
+    private static final String[] GENRES = {"Science", "Math", "Programming", "Language", "Art"};
+    private static final String[] WORDS = {
+            "atom", "cell", "energy", "force", "gravity", "light", "matrix", "vector", "prime", "integral",
+            "function", "loop", "array", "pointer", "thread", "class", "verb", "noun", "tense", "grammar",
+            "color", "canvas", "sculpture", "baroque", "palette", "ratio", "graph", "proof", "theorem", "angle",
+            "molecule", "protein", "orbit", "planet", "wave", "circuit", "compiler", "syntax", "query", "index",
+            "vowel", "accent", "idiom", "poem", "sonnet", "fresco", "portrait", "sketch", "fraction", "limit",
+            "enzyme", "genome", "fossil", "climate", "magnet", "photon", "recursion", "stack", "queue", "hash",
+            "adjective", "phrase", "chord", "rhythm"};
+    private static final String PASSWORD_HASH = BenchmarkDatabase.PASSWORD_HASH;
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int COPY_BUFFER_BYTES = 1 << 20;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private final Connection connection;
+    private final boolean postgres;
+    private final int users;
+    private final int decks;
+    private final long cards;
+    private final long history;
+    private final double skew;
+    private final long seed;
+    private final long userStride;
+    private final long deckStride;
+
+    //per deck, filled while generating decks and used for cards and history
+    private int[] deckOwner;
+    private int[] deckCards;
+    private boolean[] deckPublic;
+
+    private DatasetGenerator(Connection connection, Map<String, String> options) {
+        this.connection = connection;
+        this.postgres = !options.get("url").startsWith("jdbc:h2:");
+        this.users = Integer.parseInt(options.get("users"));
+        this.decks = Integer.parseInt(options.get("decks"));
+        this.cards = Long.parseLong(options.get("cards"));
+        this.history = Long.parseLong(options.get("history"));
+        this.skew = Double.parseDouble(options.get("skew"));
+        this.seed = Long.parseLong(options.get("seed"));
+        this.userStride = stride(users);
+        this.deckStride = stride(decks);
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLogging.quiet();
+        Map<String, String> options = new HashMap<>();
+        options.put("url", "jdbc:postgresql://localhost:5432/final_capstone");
+        options.put("username", "final_capstone_appuser");
+        options.put("password", "finalcapstone");
+        options.put("users", "10000");
+        options.put("decks", "50000");
+        options.put("cards", "1000000");
+        options.put("history", "200000");
+        options.put("skew", "1.1");
+        options.put("seed", "42");
+        options.put("truncate", "false");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --option=value but got " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        try (Connection connection = DriverManager.getConnection(options.get("url"), options.get("username"), options.get("password"))) {
+            if (options.containsKey("schema")) {
+                ScriptUtils.executeSqlScript(connection, new DefaultResourceLoader().getResource(options.get("schema")));
+            }
+            DatasetGenerator generator = new DatasetGenerator(connection, options);
+            generator.prepare(Boolean.parseBoolean(options.get("truncate")));
+            long start = System.nanoTime();
+            List<String> deferred = generator.dropSecondaryIndexes();
+            try {
+                generator.generateUsers();
+                generator.generateDecks();
+                generator.generateCards();
+                generator.generateHistory();
+            } finally {
+                generator.recreate(deferred);
+            }
+            generator.finish();
+            System.out.printf("Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private void prepare(boolean truncate) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (truncate) {
+                if (postgres) {
+                    statement.execute("TRUNCATE users, deck, card, user_deck_history RESTART IDENTITY");
+                } else {
+                    statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                    for (String table : new String[]{"user_deck_history", "card", "deck", "users"}) {
+                        statement.execute("TRUNCATE TABLE " + table);
+                    }
+                    statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            } else {
+                try (ResultSet rs = statement.executeQuery("SELECT count(*) FROM users")) {
+                    rs.next();
+                    if (rs.getLong(1) > 0) {
+                        throw new IllegalStateException("users is not empty; pass --truncate=true to replace its contents");
+                    }
+                }
+            }
+            if (postgres) {
+                //a lost tail after a crash only means rerunning the generator
+                statement.execute("SET synchronous_commit = off");
+            }
+        }
+    }
+
+    /**
+     * On Postgres, drops the foreign keys and the indexes that are not primary keys or unique
+     * constraints, and returns the statements that put them back. Building them once after the
+     * load is several times faster than maintaining them row by row.
+     */
+    private List<String> dropSecondaryIndexes() throws SQLException {
+        List<String> drop = new ArrayList<>();
+        List<String> recreate = new ArrayList<>();
+        if (!postgres) return recreate;
+        String tables = "('users', 'deck', 'card', 'user_deck_history')";
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT conrelid::regclass, conname, pg_get_constraintdef(oid) FROM pg_constraint " +
+                    "WHERE contype = 'f' AND conrelid::regclass::text IN " + tables)) {
+                while (rs.next()) {
+                    drop.add("ALTER TABLE " + rs.getString(1) + " DROP CONSTRAINT " + rs.getString(2));
+                    recreate.add("ALTER TABLE " + rs.getString(1) + " ADD CONSTRAINT " + rs.getString(2) + " " + rs.getString(3));
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT i.indexname, i.indexdef FROM pg_indexes i " +
+                    "WHERE i.schemaname = current_schema() AND i.tablename IN " + tables + " " +
+                    "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conname = i.indexname AND c.contype IN ('p', 'u'))")) {
+                while (rs.next()) {
+                    drop.add("DROP INDEX " + rs.getString(1));
+                    //indexes after the data, foreign keys last
+                    recreate.add(0, rs.getString(2));
+                }
+            }
+            for (String sql : drop) {
+                statement.execute(sql);
+            }
+        }
+        return recreate;
+    }
+
+    private void recreate(List<String> statements) throws SQLException {
+        if (statements.isEmpty()) return;
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET maintenance_work_mem = '512MB'");
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+        System.out.printf("%-18s %,14d built in %8.1f s%n", "indexes and keys", statements.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private void generateUsers() throws SQLException {
+        try (TableSink sink = sink("users", "user_id", "username", "password_hash", "role")) {
+            for (int id = 1; id <= users; id++) {
+                sink.row(id, "user" + id, PASSWORD_HASH, id == 1 ? "ROLE_ADMIN" : "ROLE_USER");
+            }
+        }
+    }
+
+    private void generateDecks() throws SQLException {
+        //cards per deck first, so deck.card_count can be written with the deck
+        deckCards = new int[decks];
+        SplittableRandom cardRandom = new SplittableRandom(seed ^ 0xCA4D5L);
+        for (long i = 0; i < cards; i++) {
+            deckCards[spread(powerLaw(cardRandom, decks), decks, deckStride) - 1]++;
+        }
+
+        deckOwner = new int[decks];
+        deckPublic = new boolean[decks];
+        SplittableRandom random = new SplittableRandom(seed ^ 0xDEC4L);
+        try (TableSink sink = sink("deck", "deck_id", "deck_status", "deck_name", "deck_desc", "owner_id", "genre", "card_count")) {
+            for (int id = 1; id <= decks; id++) {
+                int owner = spread(powerLaw(random, users), users, userStride);
+                //60% public, 30% private, 10% waiting for approval
+                int roll = random.nextInt(10);
+                int status = roll < 6 ? 3 : roll < 9 ? 1 : 2;
+                String genre = GENRES[powerLaw(random, GENRES.length) - 1];
+                deckOwner[id - 1] = owner;
+                deckPublic[id - 1] = status == 3;
+                sink.row(id, status, genre + " " + words(random, 2) + " " + id, "A deck about " + words(random, 4),
+                        owner, genre, deckCards[id - 1]);
+            }
+        }
+    }
+
+    private void generateCards() throws SQLException {
+        SplittableRandom random = new SplittableRandom(seed ^ 0xCA4DL);
+        long id = 0;
+        try (TableSink sink = sink("card", "card_id", "question", "answer", "image_url", "deck_id")) {
+            //deck by deck, as cards are added through the UI
+            for (int deck = 1; deck <= decks; deck++) {
+                for (int i = 0; i < deckCards[deck - 1]; i++) {
+                    sink.row(++id, "What is the " + words(random, 3) + "?", "The " + words(random, 2), null, deck);
+                }
+            }
+        }
+    }
+
+    private void generateHistory() throws SQLException {
+        //how many decks each user has studied; a user can study at most the decks there are
+        int[] studied = new int[users];
+        SplittableRandom countRandom = new SplittableRandom(seed ^ 0x415L);
+        for (long i = 0; i < history; i++) {
+            int user = spread(powerLaw(countRandom, users), users, userStride) - 1;
+            if (studied[user] < decks / 2) studied[user]++;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed ^ 0x4157L);
+        long maxSeconds = 365L * 24 * 60 * 60;
+        try (TableSink sink = sink("user_deck_history", "user_id", "deck_id", "score", "correct_answers", "last_updated")) {
+            Set<Integer> seen = new HashSet<>();
+            for (int user = 1; user <= users; user++) {
+                seen.clear();
+                for (int i = 0; i < studied[user - 1]; i++) {
+                    int deck = pickStudiedDeck(random, user, seen);
+                    if (deck == 0) break;
+                    double percent = random.nextDouble();
+                    int correct = (int) Math.round(percent * deckCards[deck - 1]);
+                    int score = percent >= 0.8 ? 3 : percent >= 0.5 ? 2 : 1;
+                    String lastUpdated = HISTORY_END.minusSeconds(random.nextLong(maxSeconds)).format(TIMESTAMP);
+                    sink.row(user, deck, score, correct, lastUpdated);
+                }
+            }
+        }
+    }
+
+    //a popular deck this user can read and has not studied yet, or 0 if there is none
+    private int pickStudiedDeck(SplittableRandom random, int user, Set<Integer> seen) {
+        int deck = 0;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            deck = spread(powerLaw(random, decks), decks, deckStride);
+            if (canStudy(user, deck) && seen.add(deck)) {
+                return deck;
+            }
+        }
+        //a heavy user has seen the popular decks; take the next readable one after the last pick
+        for (int i = 0; i < decks; i++) {
+            deck = deck % decks + 1;
+            if (canStudy(user, deck) && seen.add(deck)) {
+                return deck;
+            }
+        }
+        return 0;
+    }
+
+    private boolean canStudy(int user, int deck) {
+        return deckPublic[deck - 1] || deckOwner[deck - 1] == user;
+    }
+
+    //identity columns continue after the generated ids, and the planner sees the new sizes
+    private void finish() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            String[][] identities = {{"users", "user_id"}, {"deck", "deck_id"}, {"card", "card_id"}};
+            for (String[] identity : identities) {
+                long next;
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(" + identity[1] + "), 0) + 1 FROM " + identity[0])) {
+                    rs.next();
+                    next = rs.getLong(1);
+                }
+                if (postgres) {
+                    statement.execute("SELECT setval(pg_get_serial_sequence('" + identity[0] + "', '" + identity[1] + "'), " + next + ", false)");
+                } else {
+                    statement.execute("ALTER TABLE " + identity[0] + " ALTER COLUMN " + identity[1] + " RESTART WITH " + next);
+                }
+            }
+            if (postgres) {
+                statement.execute("ANALYZE users, deck, card, user_deck_history");
+            }
+        }
+    }
+
+    /**
+     * A rank in 1..n drawn from a bounded power law with exponent skew: rank 1 is the most
+     * likely. Inverts the continuous distribution, so it costs the same for any n.
+     */
+    private int powerLaw(SplittableRandom random, int n) {
+        double u = random.nextDouble();
+        double x = skew == 1
+                ? Math.pow(n + 1, u)
+                : Math.pow((Math.pow(n + 1, 1 - skew) - 1) * u + 1, 1 / (1 - skew));
+        return Math.min((int) x, n);
+    }
+
+    //maps popularity rank 1..n onto an id 1..n; a stride coprime to n makes it a fixed permutation
+    private static int spread(int rank, int n, long stride) {
+        return (int) ((rank - 1) * stride % n) + 1;
+    }
+
+    private static long stride(int n) {
+        long stride = 7_919;
+        while (gcd(stride, n) != 1) stride += 2;
+        return stride;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private String words(SplittableRandom random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(WORDS[powerLaw(random, WORDS.length) - 1]);
+        }
+        return sb.toString();
+    }
+
+    private TableSink sink(String table, String... columns) throws SQLException {
+        return postgres ? new CopySink(table, columns) : new BatchSink(table, columns);
+    }
+
+    private abstract static class TableSink implements AutoCloseable {
+        private final String table;
+        private final long start = System.nanoTime();
+        protected long rows;
+
+        TableSink(String table) {
+            this.table = table;
+        }
+
+        abstract void row(Object... values) throws SQLException;
+
+        protected abstract void complete() throws SQLException;
+
+        @Override
+        public void close() throws SQLException {
+            complete();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-18s %,14d rows in %8.1f s = %,12.0f rows/s%n", table, rows, seconds, rows / seconds);
+        }
+    }
+
+    //COPY ... FROM STDIN in text format; the generated values never contain tabs, newlines or backslashes
+    private class CopySink extends TableSink {
+        private final CopyIn copy;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_BYTES + 4096);
+
+        CopySink(String table, String... columns) throws SQLException {
+            super(table);
+            copy = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN");
+        }
+
+        @Override
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) buffer.append('\t');
+                buffer.append(values[i] == null ? "\\N" : values[i]);
+            }
+            buffer.append('\n');
+            rows++;
+            if (buffer.length() >= COPY_BUFFER_BYTES) flush();
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+
+        @Override
+        protected void complete() throws SQLException {
+            flush();
+            copy.endCopy();
+        }
+    }
+
+    //batched INSERTs committed every INSERT_BATCH_SIZE rows
+    private class BatchSink extends TableSink {
+        private final PreparedStatement insert;
+
+        BatchSink(String table, String... columns) throws SQLException {
+            super(table);
+            connection.setAutoCommit(false);
+            insert = connection.prepareStatement("INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.length, "?")) + ")");
+        }
+
+        @Override
+        void row(Object... values) throws SQLException {
+            for (int i = 0; i < values.length; i++) {
+                insert.setObject(i + 1, values[i]);
+            }
+            insert.addBatch();
+            if (++rows % INSERT_BATCH_SIZE == 0) {
+                insert.executeBatch();
+                connection.commit();
+            }
+        }
+
+        @Override
+        protected void complete() throws SQLException {
+            insert.executeBatch();
+            connection.commit();
+            insert.close();
+            connection.setAutoCommit(true);
+        }
+    }
+}
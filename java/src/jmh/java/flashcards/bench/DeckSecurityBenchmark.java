@@ -0,0 +1,85 @@
+package flashcards.bench;
+
+import flashcards.dao.JdbcDeckDao;
+import flashcards.dao.JdbcUserDao;
+import flashcards.dao.RequestDeckCache;
+import flashcards.security.DeckSecurityService;
+import flashcards.security.PrincipalCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeckSecurityService checks as evaluated by @PreAuthorize. Outside a web request the
+ * RequestDeckCache reads straight through, so each call loads the deck once, as the first
+ * check of a request does. principalCacheSize 0 turns the principal cache off, so owner
+ * checks also pay for findByUsername.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeckSecurityBenchmark {
+
+    //seedDecks cycles status by deck id: 1 unlisted, 2 public, 3 private; all owned by user1 here
+    private static final long PUBLIC_DECK = 2;
+    private static final long PRIVATE_DECK = 3;
+
+    @Param({"0", "10000"})
+    public int principalCacheSize;
+
+    private BenchmarkDatabase database;
+    private DeckSecurityService deckSecurity;
+    private Authentication owner;
+    private Authentication stranger;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase("security" + principalCacheSize);
+        database.seedUsers(1000);
+        database.seedDecks(1000, 1, 10);
+        JdbcDeckDao deckDao = new JdbcDeckDao(database.jdbcTemplate(), database.dialect());
+        PrincipalCache principalCache = new PrincipalCache(new JdbcUserDao(database.jdbcTemplate(), new BCryptPasswordEncoder(), database.dialect()), principalCacheSize, 300);
+        deckSecurity = new DeckSecurityService(new RequestDeckCache(deckDao), principalCache);
+        owner = user("user1");
+        stranger = user("user500");
+        //a failed deck lookup denies quietly, so make sure each benchmark times the check it names
+        if (!canReadPublic() || !canReadPrivateAsOwner() || !canModifyAsOwner() || canModifyAsStranger()) {
+            throw new IllegalStateException("DeckSecurityService did not return the expected results; check bench-schema.sql");
+        }
+    }
+
+    private static Authentication user(String username) {
+        return new UsernamePasswordAuthenticationToken(username, "",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public boolean canReadPublic() {
+        return deckSecurity.canRead(PUBLIC_DECK, stranger);
+    }
+
+    @Benchmark
+    public boolean canReadPrivateAsOwner() {
+        return deckSecurity.canRead(PRIVATE_DECK, owner);
+    }
+
+    @Benchmark
+    public boolean canModifyAsOwner() {
+        return deckSecurity.canModify(PUBLIC_DECK, owner);
+    }
+
+    @Benchmark
+    public boolean canModifyAsStranger() {
+        return deckSecurity.canModify(PUBLIC_DECK, stranger);
+    }
+}
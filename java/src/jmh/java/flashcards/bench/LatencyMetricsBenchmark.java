@@ -0,0 +1,45 @@
+package flashcards.bench;
+
+import flashcards.dao.DeckDao;
+import flashcards.metrics.Histogram;
+import flashcards.metrics.LatencyMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-call cost of the timing instrumentation: what MethodTimingPostProcessor adds to
+ * every DAO and security call, and what InstrumentedJdbcTemplate adds to every statement.
+ * Both should show 0 B/op under -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyMetricsBenchmark {
+
+    private LatencyMetrics metrics;
+    private Method method;
+    private long value;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        metrics = new LatencyMetrics();
+        method = DeckDao.class.getMethod("getDeckById", Long.class);
+        metrics.forMethod(method);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timeMethodCall() {
+        Histogram histogram = metrics.forMethod(method);
+        long start = System.nanoTime();
+        histogram.record(System.nanoTime() - start + (value++ & 0xFFFF));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void countSqlStatement() {
+        metrics.sqlStatement();
+    }
+}
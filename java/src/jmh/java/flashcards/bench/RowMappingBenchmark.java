@@ -0,0 +1,72 @@
+package flashcards.bench;
+
+import flashcards.dao.JdbcCardDao;
+import flashcards.dao.JdbcDeckDao;
+import flashcards.model.Card;
+import flashcards.model.Deck;
+import flashcards.model.DeckSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The DAO row mapping paths: mapRowToDeck over a SqlRowSet (getDecksByStatusId),
+ * mapRowToDeckSummary and mapToRowCard over a plain ResultSet. Each call reads rows rows,
+ * so divide gc.alloc.rate.norm by rows for bytes per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RowMappingBenchmark {
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private JdbcDeckDao deckDao;
+    private JdbcCardDao cardDao;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase("rows" + rows);
+        database.seedUsers(10);
+        //every third deck is public, so status 3 returns rows decks; deck 1 holds rows cards
+        database.seedDecks(rows * 3, 10, 0);
+        for (int i = 0; i < rows; i++) {
+            database.jdbcTemplate().update("INSERT INTO card (question, answer, deck_id) VALUES (?, ?, 1)", "Question " + i + "?", "Answer " + i);
+        }
+        deckDao = new JdbcDeckDao(database.jdbcTemplate(), database.dialect());
+        cardDao = new JdbcCardDao(database.jdbcTemplate());
+        //each benchmark must map rows rows, or the per-row figures mean nothing
+        expectRows("decksFromRowSet", decksFromRowSet().size());
+        expectRows("deckSummaries", deckSummaries().size());
+        expectRows("cards", cards().size());
+    }
+
+    private void expectRows(String benchmark, int mapped) {
+        if (mapped != rows) {
+            throw new IllegalStateException(benchmark + " mapped " + mapped + " rows, expected " + rows);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Deck> decksFromRowSet() {
+        return deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC);
+    }
+
+    @Benchmark
+    public List<DeckSummary> deckSummaries() {
+        return deckDao.getPublicDeckSummariesPage(2, 0, null, null, rows);
+    }
+
+    @Benchmark
+    public List<Card> cards() {
+        return cardDao.getAllCards(1);
+    }
+}
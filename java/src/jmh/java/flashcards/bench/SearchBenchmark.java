@@ -0,0 +1,87 @@
+package flashcards.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import flashcards.controller.SearchController;
+import flashcards.dao.JdbcSearchDao;
+import flashcards.dao.SqlDialect;
+import flashcards.model.SearchHit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JdbcSearchDao.search, the query behind GET /api/search, over a DatasetGenerator data set.
+ * Sampled rather than averaged, so the p50/p99 can be held against the latency target. The
+ * query words range from the most used of the generator's vocabulary (atom) to the least
+ * (rhythm); viewer 0 is an anonymous caller, viewer 1 also sees its own private decks.
+ *
+ * By default a small data set is generated into an in-memory H2, where search is the
+ * substring fallback. The real numbers come from PostgreSQL, where it runs the tsvector/GIN
+ * queries: load the data once with DatasetGenerator, then point -Dbench.url at the same
+ * database (and schema). The benchmark only reads it.
+ *   mvn -Pjmh test-compile exec:exec -Djmh.include=Search \
+ *       -Djmh.args="-jvmArgsAppend -Dbench.url=jdbc:postgresql://localhost:5432/final_capstone"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+
+    private static final String H2_URL = "jdbc:h2:mem:search;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Param({"atom", "sonnet", "rhythm", "atom theorem"})
+    public String query;
+
+    @Param({"0", "1"})
+    public long viewerId;
+
+    //the application's default search.max-candidates
+    @Param({"10000"})
+    public int maxCandidates;
+
+    private HikariDataSource dataSource;
+    private JdbcSearchDao searchDao;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkLogging.quiet();
+        String url = System.getProperty("bench.url");
+        dataSource = new HikariDataSource();
+        if (url == null) {
+            DatasetGenerator.main(new String[]{"--url=" + H2_URL, "--username=sa", "--password=",
+                    "--schema=classpath:bench-schema.sql", "--users=1000", "--decks=5000", "--cards=100000", "--history=0"});
+            dataSource.setJdbcUrl(H2_URL);
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+        } else {
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(System.getProperty("bench.username", "final_capstone_appuser"));
+            dataSource.setPassword(System.getProperty("bench.password", "finalcapstone"));
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Long cards = jdbcTemplate.queryForObject("SELECT count(*) FROM card", Long.class);
+        if (cards == null || cards == 0) {
+            throw new IllegalStateException("No cards at " + dataSource.getJdbcUrl() + "; load them with DatasetGenerator first");
+        }
+        searchDao = new JdbcSearchDao(jdbcTemplate, new SqlDialect(dataSource.getJdbcUrl()), maxCandidates);
+        //a query that finds nothing would time the empty index probe, not search
+        if (search().isEmpty()) {
+            throw new IllegalStateException("search for '" + query + "' found nothing in " + cards + " cards");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (System.getProperty("bench.url") == null) {
+            new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<SearchHit> search() {
+        return searchDao.search(query, viewerId, SearchController.DEFAULT_LIMIT);
+    }
+}
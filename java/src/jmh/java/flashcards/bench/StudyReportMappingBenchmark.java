@@ -0,0 +1,98 @@
+package flashcards.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import flashcards.dao.JdbcDeckDao;
+import flashcards.model.DeckHistory;
+import flashcards.model.StudyReportRow;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Study report mapping and serialization: the previous HashMap-per-row version against
+ * StudyReportRow mapped by column index. Both read the same rows and write JSON to a
+ * discarding stream. The history rows are written twice through the DAO's upsert, so with
+ * -Dbench.url the setup also checks the PostgreSQL ON CONFLICT statement. Run with -prof gc (the jmh profile does) and divide
+ * gc.alloc.rate.norm by rows for bytes allocated per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StudyReportMappingBenchmark {
+
+    private static final String STUDY_REPORT = "SELECT d.deck_id, d.card_count, d.deck_name, d.genre, udh.score, udh.correct_answers, udh.last_updated " +
+            "FROM user_deck_history udh JOIN deck d ON d.deck_id = udh.deck_id WHERE udh.user_id = ? ORDER BY udh.last_updated;";
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcDeckDao deckDao;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase("report" + rows);
+        database.seedUsers(1);
+        database.seedDecks(rows, 1, 0);
+        jdbcTemplate = database.jdbcTemplate();
+        deckDao = new JdbcDeckDao(jdbcTemplate, database.dialect());
+        List<DeckHistory> inserts = new ArrayList<>(rows);
+        List<DeckHistory> updates = new ArrayList<>(rows);
+        for (long deck = 1; deck <= rows; deck++) {
+            inserts.add(new DeckHistory(1, deck, 1, 0));
+            updates.add(new DeckHistory(1, deck, (int) (deck % 3) + 1, (int) (deck % 10)));
+        }
+        deckDao.saveUserDeckHistories(inserts);
+        deckDao.saveUserDeckHistories(updates);
+        //the second write must have updated each row in place
+        Integer written = jdbcTemplate.queryForObject("SELECT count(*) FROM user_deck_history WHERE user_id = 1 AND correct_answers = MOD(deck_id, 10)", Integer.class);
+        if (written == null || written != rows || deckDao.getUserStudyReport(1L).size() != rows) {
+            throw new IllegalStateException("history upsert (" + database.dialect() + ") left " + written + " updated rows, expected " + rows);
+        }
+        //matches Spring Boot's default: dates as ISO strings
+        objectMapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapPerRow() throws IOException {
+        //the previous implementation
+        List<Map<String, Object>> reportData = new ArrayList<>();
+        SqlRowSet result = jdbcTemplate.queryForRowSet(STUDY_REPORT, 1L);
+        while (result.next()) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("deck_id", result.getLong("deck_id"));
+            row.put("num_cards", result.getInt("card_count"));
+            row.put("deck_name", result.getString("deck_name"));
+            row.put("genre", result.getString("genre"));
+            row.put("score", result.getInt("score"));
+            row.put("correct_answers", result.getInt("correct_answers"));
+            row.put("last_updated", result.getTimestamp("last_updated"));
+            reportData.add(row);
+        }
+        objectMapper.writeValue(OutputStream.nullOutputStream(), reportData);
+        return reportData;
+    }
+
+    @Benchmark
+    public List<StudyReportRow> typedRow() throws IOException {
+        List<StudyReportRow> reportData = deckDao.getUserStudyReport(1L);
+        objectMapper.writeValue(OutputStream.nullOutputStream(), reportData);
+        return reportData;
+    }
+}
@@ -0,0 +1,58 @@
+package flashcards.bench;
+
+import flashcards.dao.JdbcUserDao;
+import flashcards.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JdbcUserDao.findByUsername, the lookup behind login and the principal cache, at users table
+ * sizes up to a million. H2 has no expression indexes, so in the default in-memory database
+ * lower(username) is a table scan and the cost grows with the table. Run against PostgreSQL
+ * (see BenchmarkDatabase) to time the ix_users_username_lower probe the application relies on:
+ *   mvn -Pjmh test-compile exec:exec -Djmh.include=UserLookup \
+ *       -Djmh.args="-jvmArgsAppend -Dbench.url=jdbc:postgresql://localhost:5432/final_capstone"
+ * The setup also registers a user through JdbcUserDao.create, so that run checks the PostgreSQL
+ * INSERT ... ON CONFLICT DO NOTHING RETURNING statement the tests (on H2) never execute.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserLookupBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int users;
+
+    private BenchmarkDatabase database;
+    private JdbcUserDao userDao;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase("users" + users);
+        database.seedUsers(users);
+        userDao = new JdbcUserDao(database.jdbcTemplate(), new BCryptPasswordEncoder(), database.dialect());
+        //a new name is inserted and found; a taken one is refused rather than failing
+        if (!userDao.create("newcomer", "password", "user") || userDao.findByUsername("newcomer") == null
+                || userDao.create("user1", "password", "user")) {
+            throw new IllegalStateException("JdbcUserDao.create (" + database.dialect() + ") did not insert once and refuse the taken name");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User findByUsername() {
+        return userDao.findByUsername("User" + ThreadLocalRandom.current().nextInt(1, users + 1));
+    }
+
+    @Benchmark
+    public User getUserById() {
+        return userDao.getUserById((long) ThreadLocalRandom.current().nextInt(1, users + 1));
+    }
+}
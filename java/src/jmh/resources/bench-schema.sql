@@ -0,0 +1,47 @@
+-- Benchmark schema for H2 in PostgreSQL mode, following database/schema.sql.
+-- H2 has no expression indexes, so BenchmarkDatabase adds ix_users_username_lower only on PostgreSQL.
+CREATE TABLE users (
+    user_id serial PRIMARY KEY,
+    username varchar(50) NOT NULL UNIQUE,
+    password_hash varchar(200) NOT NULL,
+    role varchar(50) NOT NULL
+);
+
+CREATE TABLE deck (
+    deck_id serial PRIMARY KEY,
+    deck_status int NOT NULL,
+    deck_name varchar NOT NULL,
+    deck_desc varchar NOT NULL,
+    owner_id int NOT NULL,
+    genre varchar NOT NULL,
+    card_count int NOT NULL DEFAULT 0,
+    version bigint NOT NULL DEFAULT 1,
+    CONSTRAINT fk_owner_id FOREIGN KEY (owner_id) REFERENCES users(user_id)
+);
+
+CREATE INDEX ix_deck_status_genre_id ON deck (deck_status, genre, deck_id);
+CREATE INDEX ix_deck_status_id ON deck (deck_status, deck_id);
+
+CREATE TABLE card (
+    card_id serial PRIMARY KEY,
+    question varchar NOT NULL,
+    answer varchar NOT NULL,
+    image_url varchar,
+    deck_id int NOT NULL,
+    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
+);
+
+CREATE INDEX ix_card_deck_id ON card (deck_id);
+
+CREATE TABLE user_deck_history (
+    user_id int NOT NULL,
+    deck_id int NOT NULL,
+    score int NOT NULL,
+    correct_answers int DEFAULT 0,
+    last_updated timestamp DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_user_deck_id PRIMARY KEY (user_id, deck_id),
+    CONSTRAINT fk_udh_user_id FOREIGN KEY (user_id) REFERENCES users(user_id),
+    CONSTRAINT fk_udh_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
+);
+
+CREATE INDEX ix_user_deck_history_deck_id ON user_deck_history (deck_id);
@@ -0,0 +1,168 @@
+package flashcards.controller;
+
+import flashcards.dao.HistoryWriteBehindBuffer;
+import flashcards.metrics.LatencyMetrics;
+import flashcards.metrics.SlowQueryLog;
+import flashcards.security.BoundedPasswordEncoder;
+import flashcards.security.PrincipalCache;
+import flashcards.security.UsernameFilter;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@CrossOrigin
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final PrincipalCache principalCache;
+    private final HistoryWriteBehindBuffer historyBuffer;
+    private final LatencyMetrics latencyMetrics;
+    private final SlowQueryLog slowQueryLog;
+    private final PublicDeckCatalogCache publicCatalog;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final UsernameFilter usernameFilter;
+
+    public AdminController(PrincipalCache principalCache, HistoryWriteBehindBuffer historyBuffer,
+                           LatencyMetrics latencyMetrics, SlowQueryLog slowQueryLog, PublicDeckCatalogCache publicCatalog,
+                           BoundedPasswordEncoder passwordEncoder, UsernameFilter usernameFilter) {
+        this.principalCache = principalCache;
+        this.historyBuffer = historyBuffer;
+        this.latencyMetrics = latencyMetrics;
+        this.slowQueryLog = slowQueryLog;
+        this.publicCatalog = publicCatalog;
+        this.passwordEncoder = passwordEncoder;
+        this.usernameFilter = usernameFilter;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/cache/principal", method = RequestMethod.GET)
+    public Map<String, Object> getPrincipalCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", principalCache.size());
+        stats.put("maxSize", principalCache.getMaxSize());
+        stats.put("hits", principalCache.getHits());
+        stats.put("misses", principalCache.getMisses());
+        stats.put("evictions", principalCache.getEvictions());
+        return stats;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/cache/principal", method = RequestMethod.DELETE)
+    public void clearPrincipalCache() {
+        principalCache.invalidateAll();
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/cache/public-decks", method = RequestMethod.GET)
+    public Map<String, Object> getPublicDeckCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", publicCatalog.isEnabled());
+        stats.put("stale", publicCatalog.isStale());
+        stats.put("decks", publicCatalog.getSize());
+        stats.put("bytes", publicCatalog.getBytes());
+        stats.put("hits", publicCatalog.getHits());
+        stats.put("staleHits", publicCatalog.getStaleHits());
+        stats.put("misses", publicCatalog.getMisses());
+        stats.put("loads", publicCatalog.getLoads());
+        stats.put("failedLoads", publicCatalog.getFailedLoads());
+        stats.put("invalidations", publicCatalog.getInvalidations());
+        return stats;
+    }
+
+    //for changes made straight in the database
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/cache/public-decks", method = RequestMethod.DELETE)
+    public void invalidatePublicDeckCache() {
+        publicCatalog.invalidate();
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/history/write-behind", method = RequestMethod.GET)
+    public Map<String, Object> getHistoryWriteBehindStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", historyBuffer.isEnabled());
+        stats.put("queueDepth", historyBuffer.getQueueDepth());
+        stats.put("maxPending", historyBuffer.getMaxPending());
+        stats.put("coalesced", historyBuffer.getCoalesced());
+        stats.put("flushes", historyBuffer.getFlushes());
+        stats.put("flushedRows", historyBuffer.getFlushedRows());
+        stats.put("failedFlushes", historyBuffer.getFailedFlushes());
+        stats.put("synchronousWrites", historyBuffer.getSynchronousWrites());
+        stats.put("droppedRows", historyBuffer.getDroppedRows());
+        stats.put("averageFlushMillis", historyBuffer.getAverageFlushMillis());
+        stats.put("lastFlushMillis", historyBuffer.getLastFlushMillis());
+        return stats;
+    }
+
+    //availability checks answered from the Bloom filter vs. looked up, and lookups that found nothing
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/username-filter", method = RequestMethod.GET)
+    public Map<String, Object> getUsernameFilterStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", usernameFilter.getUsers());
+        stats.put("bits", usernameFilter.getBits());
+        stats.put("hashes", usernameFilter.getHashes());
+        stats.put("definitelyAvailable", usernameFilter.getDefinitelyAvailable());
+        stats.put("databaseChecks", usernameFilter.getDatabaseChecks());
+        stats.put("falsePositives", usernameFilter.getFalsePositives());
+        return stats;
+    }
+
+    //rebuilds from the users table, e.g. after users were loaded straight into the database
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/username-filter/rebuild", method = RequestMethod.POST)
+    public void rebuildUsernameFilter() {
+        usernameFilter.rebuild();
+    }
+
+    //BCrypt pool used by login and register: saturation, rejections, queue wait and hash time
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/password-hashing", method = RequestMethod.GET)
+    public Map<String, Object> getPasswordHashingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", passwordEncoder.getThreads());
+        stats.put("active", passwordEncoder.getActive());
+        stats.put("queueDepth", passwordEncoder.getQueueDepth());
+        stats.put("queueCapacity", passwordEncoder.getQueueCapacity());
+        stats.put("rejected", passwordEncoder.getRejected());
+        stats.put("queueWait", LatencyMetrics.latency(passwordEncoder.getQueueWait(), false));
+        stats.put("hashLatency", LatencyMetrics.latency(passwordEncoder.getHashLatency(), false));
+        return stats;
+    }
+
+    //per DAO/security method and per endpoint latency, plus SQL statements per request; buckets=true adds the histograms
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/metrics", method = RequestMethod.GET)
+    public Map<String, Object> getLatencyMetrics(@RequestParam(required = false, defaultValue = "false") boolean buckets) {
+        return latencyMetrics.snapshot(buckets);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/metrics", method = RequestMethod.DELETE)
+    public void resetLatencyMetrics() {
+        latencyMetrics.reset();
+    }
+
+    //statements over jdbc.slow-query.threshold-ms, newest first, with sampled plans
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/slow-queries", method = RequestMethod.GET)
+    public Map<String, Object> getSlowQueries() {
+        Map<String, Object> log = new LinkedHashMap<>();
+        log.put("enabled", slowQueryLog.isEnabled());
+        log.put("thresholdMillis", slowQueryLog.getThresholdMillis());
+        log.put("capacity", slowQueryLog.getCapacity());
+        log.put("captured", slowQueryLog.getCaptured());
+        log.put("explained", slowQueryLog.getExplained());
+        log.put("queries", slowQueryLog.getQueries());
+        return log;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @RequestMapping(path = "/slow-queries", method = RequestMethod.DELETE)
+    public void clearSlowQueries() {
+        slowQueryLog.clear();
+    }
+}
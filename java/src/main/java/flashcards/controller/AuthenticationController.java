@@ -9,17 +9,27 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 import flashcards.dao.UserDao;
 import flashcards.model.LoginDTO;
+import flashcards.model.RefreshTokenDTO;
 import flashcards.model.RegisterUserDTO;
 import flashcards.model.User;
 import flashcards.model.UserAlreadyExistsException;
+import flashcards.security.PasswordHashingBusyException;
+import flashcards.security.PrincipalCache;
+import flashcards.security.UsernameFilter;
 import flashcards.security.jwt.JWTFilter;
+import flashcards.security.jwt.RefreshTokenDenylist;
 import flashcards.security.jwt.TokenProvider;
 
 @RestController
@@ -30,11 +40,21 @@ public class AuthenticationController {
     private final TokenProvider tokenProvider;
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private UserDao userDao;
-
-    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao) {
+    private final PrincipalCache principalCache;
+    private final RefreshTokenDenylist refreshTokenDenylist;
+    private final UsernameFilter usernameFilter;
+    private final UserDetailsService userDetailsService;
+
+    public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder, UserDao userDao,
+                                    PrincipalCache principalCache, RefreshTokenDenylist refreshTokenDenylist, UsernameFilter usernameFilter,
+                                    UserDetailsService userDetailsService) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDao = userDao;
+        this.principalCache = principalCache;
+        this.refreshTokenDenylist = refreshTokenDenylist;
+        this.usernameFilter = usernameFilter;
+        this.userDetailsService = userDetailsService;
     }
 
     @PreAuthorize("permitAll()")
@@ -47,24 +67,71 @@ public class AuthenticationController {
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = tokenProvider.createToken(authentication, false);
+        String refreshToken = tokenProvider.createRefreshToken(authentication);
         
         User user = userDao.findByUsername(loginDto.getUsername());
 
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
-        return new ResponseEntity<>(new LoginResponse(jwt, user), httpHeaders, HttpStatus.OK);
+        return new ResponseEntity<>(new LoginResponse(jwt, refreshToken, user), httpHeaders, HttpStatus.OK);
+    }
+
+    //New access token for a refresh token, no password check; the refresh token is rotated within its session,
+    //which ends jwt.session-max-age-in-seconds after the login. Authorities are reloaded, so a changed role
+    //applies and a removed user is turned away.
+    @PreAuthorize("permitAll()")
+    @RequestMapping(value = "/refresh", method = RequestMethod.POST)
+    public ResponseEntity<TokenResponse> refresh(@Valid @RequestBody RefreshTokenDTO refreshDto) {
+        TokenProvider.RefreshToken refreshToken = tokenProvider.resolveRefreshToken(refreshDto.getRefreshToken());
+        //revoke() is false when the token was used before, so a replayed token gets nothing
+        if (refreshToken == null || !refreshTokenDenylist.revoke(refreshToken.getId(), refreshToken.getExpiresAt())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        UserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(refreshToken.getSubject());
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Authentication authentication = new UsernamePasswordAuthenticationToken(user, "", user.getAuthorities());
+        String jwt = tokenProvider.createToken(authentication, false);
+
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+        return new ResponseEntity<>(new TokenResponse(jwt, tokenProvider.createRefreshToken(refreshToken)), httpHeaders, HttpStatus.OK);
+    }
+
+    //Revokes the refresh token; access tokens already issued stay valid until they expire
+    @PreAuthorize("permitAll()")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @RequestMapping(value = "/logout", method = RequestMethod.POST)
+    public void logout(@Valid @RequestBody RefreshTokenDTO refreshDto) {
+        TokenProvider.RefreshToken refreshToken = tokenProvider.resolveRefreshToken(refreshDto.getRefreshToken());
+        if (refreshToken != null) {
+            refreshTokenDenylist.revoke(refreshToken.getId(), refreshToken.getExpiresAt());
+        }
     }
 
     @PreAuthorize("permitAll()")
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(value = "/register", method = RequestMethod.POST)
     public void register(@Valid @RequestBody RegisterUserDTO newUser) {
-        try {
-            User user = userDao.findByUsername(newUser.getUsername());
+        //a single insert that does nothing if the name is taken, so concurrent sign-ups cannot both succeed
+        if (!userDao.create(newUser.getUsername(), newUser.getPassword(), newUser.getRole())) {
             throw new UserAlreadyExistsException();
-        } catch (UsernameNotFoundException e) {
-            userDao.create(newUser.getUsername(),newUser.getPassword(), newUser.getRole());
         }
+        principalCache.invalidate(newUser.getUsername());
+        usernameFilter.add(newUser.getUsername());
+    }
+
+    //Live check for the sign-up form; names never registered are answered without a query
+    @PreAuthorize("permitAll()")
+    @RequestMapping(value = "/register/available", method = RequestMethod.GET)
+    public Map<String, Object> isUsernameAvailable(@RequestParam String username) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("username", username);
+        result.put("available", usernameFilter.isAvailable(username));
+        return result;
     }
 
     
@@ -74,16 +141,26 @@ public class AuthenticationController {
         return userDao.getUserById(id).getUsername();
     }
 
+    //login and register hash on a bounded pool; when it is full, shed the request instead of queueing it
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Void> passwordHashingBusy(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+
     /**
      * Object to return as body in JWT Authentication.
      */
     static class LoginResponse {
 
         private String token;
+        private String refreshToken;
         private User user;
 
-        LoginResponse(String token, User user) {
+        LoginResponse(String token, String refreshToken, User user) {
             this.token = token;
+            this.refreshToken = refreshToken;
             this.user = user;
         }
 
@@ -96,6 +173,11 @@ public class AuthenticationController {
             this.token = token;
         }
 
+        @JsonProperty("refreshToken")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
         @JsonProperty("user")
 		public User getUser() {
 			return user;
@@ -105,5 +187,28 @@ public class AuthenticationController {
 			this.user = user;
 		}
     }
-}
 
+    /**
+     * Object to return as body of a token refresh.
+     */
+    static class TokenResponse {
+
+        private final String token;
+        private final String refreshToken;
+
+        TokenResponse(String token, String refreshToken) {
+            this.token = token;
+            this.refreshToken = refreshToken;
+        }
+
+        @JsonProperty("token")
+        String getToken() {
+            return token;
+        }
+
+        @JsonProperty("refreshToken")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+}
@@ -1,44 +1,161 @@
 package flashcards.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import flashcards.dao.CardDao;
+import flashcards.dao.RequestDeckCache;
+import flashcards.model.BulkImportResult;
 import flashcards.model.Card;
+import flashcards.model.Deck;
+import flashcards.model.InvalidCardImportException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 @RequestMapping("/api")
 public class CardController {
+    public static final int MAX_BULK_CARDS = 10000;
+
     private CardDao cardDao;
+    private ObjectMapper objectMapper;
+    private RequestDeckCache deckCache;
+    private PublicDeckCatalogCache publicCatalog;
 
-    public CardController(CardDao cardDao) {
+    public CardController(CardDao cardDao, ObjectMapper objectMapper, RequestDeckCache deckCache, PublicDeckCatalogCache publicCatalog) {
         this.cardDao = cardDao;
+        this.objectMapper = objectMapper;
+        this.deckCache = deckCache;
+        this.publicCatalog = publicCatalog;
     }
 
 
+    //ETag is the deck version, which every card write bumps; on a match the card rows are never read
     @PreAuthorize("@deckSecurity.canRead(#deckId, authentication)")
     @RequestMapping(path = "/deck/{deckId}/card", method = RequestMethod.GET)
-    public List<Card> getAllCard(@PathVariable long deckId) {
-        return cardDao.getAllCards(deckId);
+    public ResponseEntity<List<Card>> getAllCard(@PathVariable long deckId,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = cardsETag(deckId);
+        if (DeckETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(DeckController.REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(DeckController.REVALIDATE).body(cardDao.getAllCards(deckId));
+    }
+
+    //Same JSON array as above, written card by card from a DB cursor so memory stays flat for huge decks
+    @PreAuthorize("@deckSecurity.canRead(#deckId, authentication)")
+    @RequestMapping(path = "/deck/{deckId}/card", method = RequestMethod.GET, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllCards(@PathVariable long deckId,
+                                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = cardsETag(deckId);
+        if (DeckETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(DeckController.REVALIDATE).build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(outputStream)) {
+                json.writeStartArray();
+                cardDao.streamCards(deckId, card -> {
+                    try {
+                        json.writeObject(card);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().eTag(etag).cacheControl(DeckController.REVALIDATE).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    //the version of the deck canRead already loaded; a card write racing the read leaves the tag older than
+    //the body, which only costs the client one more full response
+    private String cardsETag(long deckId) {
+        Deck deck = deckCache.getDeckById(deckId);
+        return DeckETags.cards(deckId, deck == null ? 0 : deck.getVersion());
     }
 
     @PreAuthorize("@deckSecurity.canModify(#deckId, authentication)")
     @RequestMapping(path = "/deck/{deckId}/card", method = RequestMethod.POST)
     public Card addCard(@PathVariable long deckId, @RequestBody Card card) {
-        return cardDao.addCard(card);
+        card.setDeckId(deckId); //the path deck is the one canModify checked
+        Card added = cardDao.addCard(card);
+        cardsChanged(deckId);
+        return added;
+    }
+
+    //Bulk import: a JSON array of cards, inserted in JDBC batches inside one transaction
+    @PreAuthorize("@deckSecurity.canModify(#deckId, authentication)")
+    @RequestMapping(path = "/deck/{deckId}/cards:bulk", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public BulkImportResult addCards(@PathVariable long deckId, @RequestBody List<Card> cards) {
+        if (cards.size() > MAX_BULK_CARDS) {
+            throw new InvalidCardImportException("At most " + MAX_BULK_CARDS + " cards can be imported at once");
+        }
+        return importCards(deckId, cards);
+    }
+
+    //Bulk import: CSV rows of question,answer[,image_url]
+    @PreAuthorize("@deckSecurity.canModify(#deckId, authentication)")
+    @RequestMapping(path = "/deck/{deckId}/cards:bulk", method = RequestMethod.POST, consumes = "text/csv")
+    public BulkImportResult addCardsCsv(@PathVariable long deckId, Reader body) throws IOException {
+        List<Card> cards = new CardCsvReader(new BufferedReader(body), MAX_BULK_CARDS).readAll();
+        return importCards(deckId, cards);
+    }
+
+    private BulkImportResult importCards(long deckId, List<Card> cards) {
+        for (int i = 0; i < cards.size(); i++) {
+            Card card = cards.get(i);
+            if (card == null || isBlank(card.getQuestion()) || isBlank(card.getAnswer())) {
+                throw new InvalidCardImportException("Card " + (i + 1) + ": question and answer are required");
+            }
+            card.setDeckId(deckId); //the path deck is the one canModify checked
+        }
+        long start = System.nanoTime();
+        List<Long> cardIds = cardDao.addCards(deckId, cards);
+        long elapsed = System.nanoTime() - start;
+        cardsChanged(deckId);
+        return new BulkImportResult(cardIds, elapsed);
+    }
+
+    //every card write bumps the deck's version, and adds and deletes its card count, both of which
+    //the public catalog shows; the deck is the one canModify already loaded
+    private void cardsChanged(long deckId) {
+        if (PublicDeckCatalogCache.isPublic(deckCache.getDeckById(deckId))) publicCatalog.invalidate();
     }
 
-    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    @RequestMapping(path = "/deck/{deck-id}/card/{card-id}", method = RequestMethod.PUT)
-    public Card updateCard(@RequestBody Card card) {
-        return cardDao.updateCard(card);
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
     }
 
-    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    @RequestMapping(path = "/deck/{deck-id}/card/{id}", method = RequestMethod.DELETE)
-    public boolean deleteCard(@PathVariable long id) {
-        return cardDao.deleteCard(id);
+    //If-Match with the deck's or its cards' ETag: 412 if any card in the deck changed since
+    @PreAuthorize("@deckSecurity.canModify(#deckId, authentication)")
+    @RequestMapping(path = "/deck/{deckId}/card/{cardId}", method = RequestMethod.PUT)
+    public ResponseEntity<Card> updateCard(@PathVariable long deckId, @PathVariable long cardId, @RequestBody Card card,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        //the path card and deck are the ones canModify checked
+        card.setCardId(cardId);
+        card.setDeckId(deckId);
+        long version = cardDao.updateCard(deckId, card, DeckETags.expectedVersion(ifMatch, deckId));
+        if (version == 0) return ResponseEntity.notFound().build();
+        cardsChanged(deckId);
+        return ResponseEntity.ok().eTag(DeckETags.cards(deckId, version)).body(card);
+    }
+
+    @PreAuthorize("@deckSecurity.canModify(#deckId, authentication)")
+    @RequestMapping(path = "/deck/{deckId}/card/{cardId}", method = RequestMethod.DELETE)
+    public boolean deleteCard(@PathVariable long deckId, @PathVariable long cardId) {
+        boolean deleted = cardDao.deleteCard(deckId, cardId);
+        if (deleted) cardsChanged(deckId);
+        return deleted;
     }
 }
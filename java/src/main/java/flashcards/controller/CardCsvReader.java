@@ -0,0 +1,97 @@
+package flashcards.controller;
+
+import flashcards.model.Card;
+import flashcards.model.InvalidCardImportException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads cards from CSV with columns question,answer[,image_url]. Fields may be quoted with
+ * double quotes ("" inside quotes is a literal quote, and quoted fields may span lines).
+ * A first row of "question,answer..." is treated as a header and skipped.
+ */
+class CardCsvReader {
+
+    private final Reader reader;
+    private final int maxCards;
+    private int line = 1;
+
+    CardCsvReader(Reader reader, int maxCards) {
+        this.reader = reader;
+        this.maxCards = maxCards;
+    }
+
+    List<Card> readAll() throws IOException {
+        List<Card> cards = new ArrayList<>();
+        boolean first = true;
+        while (true) {
+            int rowLine = line;
+            List<String> row = readRow();
+            if (row == null) break;
+            if (row.size() == 1 && row.get(0).trim().isEmpty()) continue; //blank line
+            if (first && "question".equalsIgnoreCase(row.get(0).trim())) {
+                first = false;
+                continue;
+            }
+            first = false;
+            if (row.size() < 2 || row.size() > 3) {
+                throw new InvalidCardImportException("Line " + rowLine + ": expected question,answer[,image_url]");
+            }
+            if (cards.size() == maxCards) {
+                throw new InvalidCardImportException("At most " + maxCards + " cards can be imported at once");
+            }
+            Card card = new Card();
+            card.setQuestion(row.get(0));
+            card.setAnswer(row.get(1));
+            card.setImage(row.size() == 3 && !row.get(2).isEmpty() ? row.get(2) : null);
+            cards.add(card);
+        }
+        return cards;
+    }
+
+    //returns null at end of input
+    private List<String> readRow() throws IOException {
+        int c = reader.read();
+        if (c == -1) return null;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new InvalidCardImportException("Line " + line + ": unterminated quoted field");
+                }
+                if (c == '"') {
+                    c = reader.read();
+                    if (c == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == -1 || c == '\n') {
+                fields.add(field.toString());
+                line++;
+                return fields;
+            } else if (c == '\r') {
+                //dropped; the following \n ends the row
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+}
@@ -1,42 +1,92 @@
 package flashcards.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import flashcards.dao.ChunkedDeckDeleter;
 import flashcards.dao.DeckDao;
+import flashcards.dao.HistoryWriteBehindBuffer;
 import flashcards.dao.JdbcDeckDao;
+import flashcards.dao.RequestDeckCache;
 import flashcards.dao.UserDao;
 import flashcards.model.Deck;
+import flashcards.model.DeckPage;
+import flashcards.model.DeckSummary;
+import flashcards.model.InvalidDeckException;
+import flashcards.model.StudyReportRow;
 import flashcards.model.User;
+import flashcards.security.PrincipalCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 @RequestMapping("/api")
 public class DeckController {
 
+    public static final int DEFAULT_PAGE_SIZE = 24;
+    public static final int MAX_PAGE_SIZE = 100;
+    //per user, and always checked against the ETag before a cached copy is reused
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private DeckDao deckDao;
     private UserDao userDao;
+    private RequestDeckCache deckCache;
+    private ChunkedDeckDeleter chunkedDeckDeleter;
+    private HistoryWriteBehindBuffer historyBuffer;
+    private PrincipalCache principalCache;
+    private ObjectMapper objectMapper;
+    private PublicDeckCatalogCache publicCatalog;
 
     //CONSTRUCTOR
-    public DeckController(DeckDao deckDao, UserDao userDao){
+    public DeckController(DeckDao deckDao, UserDao userDao, RequestDeckCache deckCache, ChunkedDeckDeleter chunkedDeckDeleter,
+                          HistoryWriteBehindBuffer historyBuffer, PrincipalCache principalCache, ObjectMapper objectMapper,
+                          PublicDeckCatalogCache publicCatalog){
         this.deckDao = deckDao;
         this.userDao = userDao;
+        this.deckCache = deckCache;
+        this.chunkedDeckDeleter = chunkedDeckDeleter;
+        this.historyBuffer = historyBuffer;
+        this.principalCache = principalCache;
+        this.objectMapper = objectMapper;
+        this.publicCatalog = publicCatalog;
     }
 
     @PreAuthorize("@deckSecurity.canCreate(authentication)")
     @RequestMapping(path="/deck", method = RequestMethod.POST)
     public Deck createDeck(@RequestBody Deck deck){
-        return deckDao.createDeck(deck);
+        checkStatus(deck);
+        Deck created = deckDao.createDeck(deck);
+        if (PublicDeckCatalogCache.isPublic(created)) publicCatalog.invalidate();
+        return created;
     }
 
+    //ETag is the deck version; a client holding the current one gets 304 and no body
     @PreAuthorize("@deckSecurity.canRead(#id, authentication)")
     @RequestMapping(path="/deck/{id}", method = RequestMethod.GET)
-    public Deck getDeckByDeckId(@PathVariable long id) { return deckDao.getDeckById(id); }
+    public ResponseEntity<Deck> getDeckByDeckId(@PathVariable long id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Deck deck = deckCache.getDeckById(id); //already loaded by canRead
+        if (deck == null) return ResponseEntity.notFound().build();
+        String etag = DeckETags.deck(deck);
+        if (DeckETags.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(deck);
+    }
 
     @PreAuthorize("@deckSecurity.canAccessUserDecks(#userId, authentication)")
     @RequestMapping(path = "/deck/myDecks/{userId}", method = RequestMethod.GET)
@@ -44,6 +94,14 @@ public class DeckController {
         return deckDao.getDecksByOwnerId(userId);
     }
     
+    //Same decks as myDecks, with owner username, card count and the caller's score filled in
+    @PreAuthorize("@deckSecurity.canAccessUserDecks(#userId, authentication)")
+    @RequestMapping(path = "/deck/myDecks/{userId}/summary", method = RequestMethod.GET)
+    public List<DeckSummary> getDeckSummariesByUserId(@PathVariable long userId, Authentication authentication) {
+        long viewerId = principalCache.viewerId(authentication);
+        return withPendingScores(deckDao.getDeckSummariesByOwnerId(userId, viewerId), viewerId);
+    }
+    
     @PreAuthorize("hasRole('ADMIN')")
     @ResponseStatus(value = HttpStatus.OK)
     @RequestMapping(path = "/deck", method = RequestMethod.GET)
@@ -53,23 +111,97 @@ public class DeckController {
         return decks;
     }
 
+    //If-Match with the deck's (or its cards') ETag makes this a compare-and-set: 412 if the deck changed since
     @PreAuthorize("@deckSecurity.canModify(#id, authentication)")
-    @ResponseStatus(value= HttpStatus.OK)
     @RequestMapping(path = "/deck/{id}", method = RequestMethod.PUT)
-    public Deck updateDeck(@PathVariable long id, @RequestBody Deck deck) {
-        return deckDao.updateDeck(deck);
+    public ResponseEntity<Deck> updateDeck(@PathVariable long id, @RequestBody Deck deck,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        checkStatus(deck);
+        Long expectedVersion = DeckETags.expectedVersion(ifMatch, id);
+        Deck before = deckCache.getDeckById(id); //already loaded by canModify
+        deckCache.evict(id);
+        deck.setDeckId(id); //the path deck is the one canModify checked
+        Deck updated = deckDao.updateDeck(deck, expectedVersion);
+        if (PublicDeckCatalogCache.isPublic(before) || PublicDeckCatalogCache.isPublic(updated)) publicCatalog.invalidate();
+        if (updated == null) return ResponseEntity.ok().build();
+        return ResponseEntity.ok().eTag(DeckETags.deck(updated)).body(updated);
     }
 
+    //async=true hides the deck right away and deletes its cards in chunks in the background (202 Accepted)
     @PreAuthorize("@deckSecurity.canDelete(#id, authentication)")
-    @ResponseStatus(value= HttpStatus.OK)
     @RequestMapping(path = "/deck/{id}", method = RequestMethod.DELETE)
-    public void deleteDeck(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteDeck(@PathVariable Long id, @RequestParam(required = false, defaultValue = "false") boolean async) {
+        boolean wasPublic = PublicDeckCatalogCache.isPublic(deckCache.getDeckById(id)); //already loaded by canDelete
+        deckCache.evict(id);
+        if (async) {
+            boolean hidden = chunkedDeckDeleter.deleteLater(id);
+            if (hidden && wasPublic) publicCatalog.invalidate();
+            return hidden ? ResponseEntity.accepted().build() : ResponseEntity.notFound().build();
+        }
         deckDao.deleteDeck(id);
+        if (wasPublic) publicCatalog.invalidate();
+        return ResponseEntity.ok().build();
     }
+
+    //Served from PublicDeckCatalogCache as pre-serialized JSON; may lag a deck write by one reload
     @PreAuthorize("permitAll()")
     @RequestMapping(path = "/deck/public", method = RequestMethod.GET)
-    public List<Deck> getPublicDecks() {
-        return deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC);
+    public ResponseEntity<byte[]> getPublicDecks() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(publicCatalog.getJson());
+    }
+
+    //Keyset page of the public catalog: pass nextCursor back as "after" to get the following page
+    @PreAuthorize("permitAll()")
+    @RequestMapping(path = "/deck/catalog", method = RequestMethod.GET)
+    public DeckPage getPublicDeckPage(@RequestParam(required = false, defaultValue = "0") long after,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(required = false) String genre,
+                                      @RequestParam(required = false) String name) {
+        int pageSize = (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        //fetch one extra row to know whether another page exists
+        List<Deck> decks = deckDao.getPublicDecksPage(after, genre, name, pageSize + 1);
+        Long nextCursor = null;
+        if (decks.size() > pageSize) {
+            decks = decks.subList(0, pageSize);
+            nextCursor = decks.get(pageSize - 1).getDeckId();
+        }
+        return new DeckPage(decks, nextCursor);
+    }
+
+    //Catalog page for the deck tiles: one query instead of a history and an owner lookup per deck
+    @PreAuthorize("permitAll()")
+    @RequestMapping(path = "/deck/catalog/summary", method = RequestMethod.GET)
+    public DeckPage getPublicDeckSummaryPage(@RequestParam(required = false, defaultValue = "0") long after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String genre,
+                                             @RequestParam(required = false) String name,
+                                             Authentication authentication) {
+        int pageSize = (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        long viewerId = principalCache.viewerId(authentication);
+        List<DeckSummary> decks = deckDao.getPublicDeckSummariesPage(viewerId, after, genre, name, pageSize + 1);
+        Long nextCursor = null;
+        if (decks.size() > pageSize) {
+            decks = decks.subList(0, pageSize);
+            nextCursor = decks.get(pageSize - 1).getDeckId();
+        }
+        return new DeckPage(new ArrayList<>(withPendingScores(decks, viewerId)), nextCursor);
+    }
+
+    //DELETING is set only by the chunked delete; a client setting it would hide the deck for good
+    private static void checkStatus(Deck deck) {
+        int status = deck.getStatus();
+        if (status != JdbcDeckDao.PRIVATE && status != JdbcDeckDao.UNLISTED && status != JdbcDeckDao.PUBLIC) {
+            throw new InvalidDeckException("status must be 1 (private), 2 (unlisted) or 3 (public)");
+        }
+    }
+
+    private List<DeckSummary> withPendingScores(List<DeckSummary> decks, long viewerId) {
+        if (viewerId == 0 || !historyBuffer.isEnabled()) return decks;
+        for (DeckSummary deck : decks) {
+            Integer pending = historyBuffer.pendingScore(viewerId, deck.getDeckId());
+            if (pending != null) deck.setScore(pending);
+        }
+        return decks;
     }
 
 
@@ -82,34 +214,42 @@ public class DeckController {
     //@ResponseStatus(value= HttpStatus.OK)
     @RequestMapping(path="/deck/{deckId}/history/{userId}", method = RequestMethod.GET)
     public int getHistoryUserDeck(@PathVariable long userId, @PathVariable long deckId) {
-        return deckDao.getHistoryUserDeck(userId, deckId);
+        Integer pending = historyBuffer.pendingScore(userId, deckId); //a score not flushed yet is still the latest
+        return pending != null ? pending : deckDao.getHistoryUserDeck(userId, deckId);
     }
 
     @PreAuthorize("@deckSecurity.canRead(#deckId, authentication)")
     //@ResponseStatus(value= HttpStatus.OK)
-    @RequestMapping(path = "/deck/{deckId}/history/{userId}", method = RequestMethod.PUT) //Updating and Inserting with this endpoint
-    public int updateUserDeckHistory(@PathVariable long userId, @PathVariable long deckId, @RequestParam(required = true, name = "score") double scorePercent, @RequestParam(required = false, name = "correct") Integer correctAnswers) {
-        if (correctAnswers != null) {
-            return deckDao.updateUserDeckHistory(userId, deckId, scorePercent, correctAnswers);
-        } else {
-            return deckDao.updateUserDeckHistory(userId, deckId, scorePercent);
-        }
-    }
-    
-    @PreAuthorize("@deckSecurity.canRead(#deckId, authentication)")
-    @RequestMapping(path = "/deck/{deckId}/history/{userId}", method = RequestMethod.POST) //Updating and Inserting with this endpoint
-    public int createUserDeckHistory(@PathVariable long userId, @PathVariable long deckId, @RequestParam(required = true, name = "score") double scorePercent, @RequestParam(required = false, name = "correct") Integer correctAnswers) {
-        if (correctAnswers != null) {
-            return deckDao.createUserDeckHistory(userId, deckId, scorePercent, correctAnswers);
-        } else {
-            return deckDao.createUserDeckHistory(userId, deckId, scorePercent);
-        }
+    @RequestMapping(path = "/deck/{deckId}/history/{userId}", method = {RequestMethod.PUT, RequestMethod.POST}) //Upserts, POST kept for older clients
+    public int saveUserDeckHistory(@PathVariable long userId, @PathVariable long deckId, @RequestParam(required = true, name = "score") double scorePercent, @RequestParam(required = false, name = "correct") Integer correctAnswers) {
+        return historyBuffer.save(userId, deckId, scorePercent, correctAnswers);
     }
 
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     @RequestMapping(path = "/deck/report/{userId}", method = RequestMethod.GET)
-    public List<Map<String, Object>> getUserStudyReport(@PathVariable long userId) {
+    public List<StudyReportRow> getUserStudyReport(@PathVariable long userId) {
         return deckDao.getUserStudyReport(userId);
     }
 
+    //Same JSON array as above, written row by row from a DB cursor so long histories are never held in memory
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    @RequestMapping(path = "/deck/report/{userId}", method = RequestMethod.GET, params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUserStudyReport(@PathVariable long userId) {
+        ObjectWriter rowWriter = objectMapper.writerFor(StudyReportRow.class);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(outputStream)) {
+                json.writeStartArray();
+                deckDao.streamUserStudyReport(userId, row -> {
+                    try {
+                        rowWriter.writeValue(json, row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
 }
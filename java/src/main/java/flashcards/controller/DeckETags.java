@@ -0,0 +1,60 @@
+package flashcards.controller;
+
+import flashcards.model.Deck;
+import flashcards.model.DeckVersionConflictException;
+
+/**
+ * Strong ETags derived from deck.version, which every write to a deck or its cards bumps. The
+ * deck and its card list get distinct tags so a cached response of one never answers the other,
+ * but both carry the same version, and either one is accepted as If-Match on a write to the deck.
+ */
+final class DeckETags {
+
+    private DeckETags() {
+    }
+
+    static String deck(Deck deck) {
+        return "\"deck-" + deck.getDeckId() + "-" + deck.getVersion() + "\"";
+    }
+
+    static String cards(long deckId, long version) {
+        return "\"cards-" + deckId + "-" + version + "\"";
+    }
+
+    //If-None-Match: true when any listed tag, weak or strong, is the current one (RFC 7232 weak comparison)
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) return true;
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The deck version an If-Match header requires, or null when there is no header or it is "*".
+     * Anything that cannot be current for this deck (a weak tag, another deck's tag, a list) fails
+     * the precondition outright.
+     */
+    static Long expectedVersion(String ifMatch, long deckId) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) return null;
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new DeckVersionConflictException();
+        }
+        tag = tag.substring(1, tag.length() - 1);
+        String suffix = "-" + deckId + "-";
+        int at = tag.indexOf(suffix);
+        String kind = at < 0 ? null : tag.substring(0, at);
+        if (!"deck".equals(kind) && !"cards".equals(kind)) {
+            throw new DeckVersionConflictException();
+        }
+        try {
+            return Long.parseLong(tag.substring(at + suffix.length()));
+        } catch (NumberFormatException e) {
+            throw new DeckVersionConflictException();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package flashcards.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import flashcards.dao.DeckDao;
+import flashcards.dao.JdbcDeckDao;
+import flashcards.model.Deck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The GET /api/deck/public response, kept as serialized JSON. Deck and card writes that touch a
+ * public deck invalidate it and start a rebuild; until the rebuild lands readers keep getting the
+ * previous bytes (stale-while-revalidate), and at most one rebuild query runs at a time. Only a
+ * cold cache makes readers wait, and then they all wait on the same load. The TTL is a safety
+ * net for changes made outside the API.
+ */
+@Component
+public class PublicDeckCatalogCache {
+
+    private final Logger log = LoggerFactory.getLogger(PublicDeckCatalogCache.class);
+
+    private final DeckDao deckDao;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long ttlNanos;
+
+    private volatile Snapshot current;
+    //bumped by every invalidation; a snapshot loaded before the latest bump is stale
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<CompletableFuture<Snapshot>> loading = new AtomicReference<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong failedLoads = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "public-deck-catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PublicDeckCatalogCache(
+            DeckDao deckDao,
+            ObjectMapper objectMapper,
+            @Value("${deck.public-cache.enabled:true}") boolean enabled,
+            @Value("${deck.public-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.deckDao = deckDao;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * The public decks as a JSON array.
+     */
+    public byte[] getJson() {
+        if (!enabled) {
+            return serialize(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC));
+        }
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            misses.incrementAndGet();
+            return join(load()).json;
+        }
+        if (snapshot.version == version.get() && System.nanoTime() - snapshot.loadedAt < ttlNanos) {
+            hits.incrementAndGet();
+            return snapshot.json;
+        }
+        staleHits.incrementAndGet();
+        load();
+        return snapshot.json;
+    }
+
+    /**
+     * Call after a write that created, changed or removed a public deck or one of its cards, or
+     * changed a deck's status to or from public.
+     */
+    public void invalidate() {
+        if (!enabled) return;
+        version.incrementAndGet();
+        invalidations.incrementAndGet();
+        //only rebuild what has been built before; the first reader loads a cold cache
+        if (current != null) {
+            load();
+        }
+    }
+
+    public static boolean isPublic(Deck deck) {
+        return deck != null && deck.getStatus() == JdbcDeckDao.PUBLIC;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isStale() {
+        Snapshot snapshot = current;
+        return snapshot == null || snapshot.version != version.get() || System.nanoTime() - snapshot.loadedAt >= ttlNanos;
+    }
+
+    public int getSize() {
+        Snapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.decks;
+    }
+
+    public int getBytes() {
+        Snapshot snapshot = current;
+        return snapshot == null ? 0 : snapshot.json.length;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getFailedLoads() {
+        return failedLoads.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    //the load in progress, or a new one; callers that arrive while it runs share it
+    private CompletableFuture<Snapshot> load() {
+        while (true) {
+            CompletableFuture<Snapshot> inProgress = loading.get();
+            if (inProgress != null) return inProgress;
+            CompletableFuture<Snapshot> future = new CompletableFuture<>();
+            if (loading.compareAndSet(null, future)) {
+                loader.execute(() -> runLoad(future));
+                return future;
+            }
+        }
+    }
+
+    private void runLoad(CompletableFuture<Snapshot> future) {
+        try {
+            //read the version first: a write during the query leaves the result stale
+            long loadedVersion = version.get();
+            long loadedAt = System.nanoTime();
+            List<Deck> decks = deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC);
+            Snapshot snapshot = new Snapshot(serialize(decks), decks.size(), loadedVersion, loadedAt);
+            current = snapshot;
+            //clear the slot before counting, so whoever sees the count can start the next load
+            loading.set(null);
+            loads.incrementAndGet();
+            future.complete(snapshot);
+        } catch (RuntimeException e) {
+            loading.set(null);
+            failedLoads.incrementAndGet();
+            log.warn("Loading the public deck catalog failed; serving the previous copy if there is one", e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static Snapshot join(CompletableFuture<Snapshot> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private byte[] serialize(List<Deck> decks) {
+        try {
+            return objectMapper.writeValueAsBytes(decks);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private static final class Snapshot {
+        private final byte[] json;
+        private final int decks;
+        private final long version;
+        private final long loadedAt;
+
+        private Snapshot(byte[] json, int decks, long version, long loadedAt) {
+            this.json = json;
+            this.decks = decks;
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package flashcards.controller;
+
+import flashcards.dao.SearchDao;
+import flashcards.model.InvalidSearchException;
+import flashcards.model.SearchHit;
+import flashcards.security.PrincipalCache;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+@RequestMapping("/api")
+public class SearchController {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+    public static final int MAX_QUERY_LENGTH = 200;
+
+    private SearchDao searchDao;
+    private PrincipalCache principalCache;
+
+    public SearchController(SearchDao searchDao, PrincipalCache principalCache) {
+        this.searchDao = searchDao;
+        this.principalCache = principalCache;
+    }
+
+    //Decks and cards matching q, best first: public ones for everybody, plus the caller's own decks.
+    //Unlisted decks of other users stay out, as they do in the catalog. On Postgres only the first
+    //search.max-candidates matches of each kind are ranked, in no particular order, so for terms that
+    //match more than that the results are good matches but not necessarily the best ones.
+    @PreAuthorize("permitAll()")
+    @RequestMapping(path = "/search", method = RequestMethod.GET)
+    public List<SearchHit> search(@RequestParam String q,
+                                  @RequestParam(required = false) Integer limit,
+                                  Authentication authentication) {
+        String query = q.trim();
+        if (query.isEmpty() || query.length() > MAX_QUERY_LENGTH) {
+            throw new InvalidSearchException("q must be 1 to " + MAX_QUERY_LENGTH + " characters");
+        }
+        int size = (limit == null || limit < 1) ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return searchDao.search(query, principalCache.viewerId(authentication), size);
+    }
+}
@@ -0,0 +1,69 @@
+package flashcards.dao;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A PreparedStatementCreator for the statements the plain query/update overloads cannot build:
+ * streamed reads that need a fetch size, and inserts that read back a generated key. Unlike a
+ * lambda it exposes its SQL and bind values, so InstrumentedJdbcTemplate can log and explain it.
+ */
+public final class BoundStatement implements PreparedStatementCreator, SqlProvider {
+
+    private final String sql;
+    private final int fetchSize;
+    private final String[] keyColumns;
+    private final Object[] args;
+
+    private BoundStatement(String sql, int fetchSize, String[] keyColumns, Object[] args) {
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.keyColumns = keyColumns;
+        this.args = args;
+    }
+
+    //forward-only read that pulls fetchSize rows per round trip
+    public static BoundStatement streaming(String sql, int fetchSize, Object... args) {
+        return new BoundStatement(sql, fetchSize, null, args);
+    }
+
+    //insert whose keyColumn value is read back through getGeneratedKeys; no args for a batch
+    public static BoundStatement returningKey(String sql, String keyColumn, Object... args) {
+        return new BoundStatement(sql, 0, new String[]{keyColumn}, args);
+    }
+
+    @Override
+    public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+        PreparedStatement ps = keyColumns != null
+                ? con.prepareStatement(sql, keyColumns)
+                : con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            if (fetchSize > 0) ps.setFetchSize(fetchSize);
+            new ArgumentPreparedStatementSetter(args).setValues(ps);
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+        return ps;
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getArgs() {
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
@@ -3,14 +3,24 @@ package flashcards.dao;
 import flashcards.model.Card;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface CardDao {
 
     List<Card> getAllCards(long deck_id);
 
+    //hands each card to the consumer as it is read from a server-side cursor
+    void streamCards(long deck_id, Consumer<Card> consumer);
+
     Card addCard(Card card);
 
-    Card updateCard(Card card);
+    //inserts all cards into the deck in one transaction, returning the new card ids in input order
+    List<Long> addCards(long deck_id, List<Card> cards);
+
+    //returns the deck's new version, or 0 if the deck has no such card; a stale expectedDeckVersion
+    //(from If-Match) throws DeckVersionConflictException
+    long updateCard(long deck_id, Card card, Long expectedDeckVersion);
 
-    boolean deleteCard(long card_id);
+    //false if the deck has no such card
+    boolean deleteCard(long deck_id, long card_id);
 }
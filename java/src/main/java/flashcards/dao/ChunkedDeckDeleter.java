@@ -0,0 +1,115 @@
+package flashcards.dao;
+
+import flashcards.model.Deck;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes very large decks in the background. The deck is hidden first, then its cards are
+ * removed in small auto-committed chunks with a pause in between, so no single statement
+ * holds locks on card for long. The final delete of the (now empty) deck cascades to history.
+ * The hidden status is the durable record of the work: decks still in DELETING are picked up
+ * again at startup and every sweep-interval-minutes, so a restart or a failed chunk only
+ * delays the delete.
+ */
+@Component
+public class ChunkedDeckDeleter {
+
+    private final Logger log = LoggerFactory.getLogger(ChunkedDeckDeleter.class);
+
+    private final DeckDao deckDao;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long sweepIntervalMinutes;
+    //queued or running, so a sweep does not queue the same deck twice
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "deck-delete");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChunkedDeckDeleter(
+            DeckDao deckDao,
+            @Value("${deck.delete.chunk-size:1000}") int chunkSize,
+            @Value("${deck.delete.chunk-pause-ms:50}") long pauseMillis,
+            @Value("${deck.delete.sweep-interval-minutes:10}") long sweepIntervalMinutes) {
+        this.deckDao = deckDao;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.sweepIntervalMinutes = sweepIntervalMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        resumePending();
+        if (sweepIntervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::resumePending, sweepIntervalMinutes, sweepIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Hides the deck and queues the chunked delete. Returns false if the deck does not exist.
+     */
+    public boolean deleteLater(long deckId) {
+        if (!deckDao.hideDeck(deckId)) return false;
+        queue(deckId);
+        return true;
+    }
+
+    /**
+     * Queues every deck left in DELETING by a restart or a failed delete.
+     */
+    public void resumePending() {
+        try {
+            for (Deck deck : deckDao.getDecksByStatusId(JdbcDeckDao.DELETING)) {
+                queue(deck.getDeckId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Looking for unfinished deck deletes failed; the next sweep will retry", e);
+        }
+    }
+
+    private void queue(long deckId) {
+        if (queued.add(deckId)) {
+            executor.execute(() -> deleteNow(deckId));
+        }
+    }
+
+    private void deleteNow(long deckId) {
+        try {
+            int deleted;
+            do {
+                deleted = deckDao.deleteCardsChunk(deckId, chunkSize);
+                if (deleted > 0 && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (deleted > 0);
+            deckDao.deleteDeck(deckId);
+            log.debug("Deleted deck {} in the background", deckId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Background delete of deck {} was interrupted; it stays hidden until the next sweep", deckId);
+        } catch (RuntimeException e) {
+            log.error("Background delete of deck {} failed; it stays hidden until the next sweep", deckId, e);
+        } finally {
+            queued.remove(deckId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -1,27 +1,39 @@
 package flashcards.dao;
 
 import flashcards.model.Deck;
+import flashcards.model.DeckHistory;
+import flashcards.model.DeckSummary;
+import flashcards.model.StudyReportRow;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 public interface DeckDao {
     Deck createDeck(Deck deck);
-    Deck updateDeck(Deck deck);
+    //expectedVersion (from If-Match) may be null; a stale one throws DeckVersionConflictException
+    Deck updateDeck(Deck deck, Long expectedVersion);
     void deleteDeck(long deckId);
+    boolean hideDeck(long deckId); //sets status DELETING so the deck drops out of every listing
+    int deleteCardsChunk(long deckId, int chunkSize);
     Deck getDeckById(Long deckId);
     List<Deck> getAllDecks();
     List<Deck> getDecksByOwnerId(long ownerId);
     List<Deck> getDecksByStatusId(int status); //1-Private 2-Pending 3-Public 4- unlisted??
-    //TODO get public decks by genre, or filter in vue
+    //keyset page of public decks ordered by deck_id; genre and namePrefix are optional filters
+    List<Deck> getPublicDecksPage(long afterDeckId, String genre, String namePrefix, int limit);
+    //listing variants joined with owner username, card count and viewerId's score in a single query
+    List<DeckSummary> getPublicDeckSummariesPage(long viewerId, long afterDeckId, String genre, String namePrefix, int limit);
+    List<DeckSummary> getDeckSummariesByOwnerId(long ownerId, long viewerId);
 
     int getHistoryUserDeck(long userId, long deckId);
-    int updateUserDeckHistory(long userId, long deckId, double scorePercent);
-    int createUserDeckHistory(long userId, long deckId, double scorePercent);
-    int updateUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers);
-    int createUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers);
+    //insert-or-update in one statement; returns the brain color score that was stored
+    int saveUserDeckHistory(long userId, long deckId, double scorePercent);
+    int saveUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers);
+    void saveUserDeckHistories(List<DeckHistory> histories); //batched upsert of already scored rows
     
-    List<Map<String, Object>> getUserStudyReport(long userId);
+    List<StudyReportRow> getUserStudyReport(long userId);
+    //hands each report row to the consumer as it is read from a server-side cursor
+    void streamUserStudyReport(long userId, Consumer<StudyReportRow> consumer);
 
 
 }
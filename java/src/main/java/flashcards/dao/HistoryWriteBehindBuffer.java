@@ -0,0 +1,373 @@
+package flashcards.dao;
+
+import flashcards.model.DeckHistory;
+import flashcards.model.HistoryBacklogException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind path for study scores. When enabled, scores are coalesced per
+ * (user, deck) in memory, latest wins, and a background thread upserts them in JDBC batches
+ * once batch-size rows are pending or flush-interval-ms has passed. That thread is the only
+ * writer, so an older score never commits after a newer one for the same key. Up to
+ * max-pending rows are accepted right away; past that a caller waits up to offer-timeout-ms
+ * for room, and then queues its row anyway and waits up to write-timeout-ms until the row has
+ * been written, or gets a 503. A batch the database rejects for its data is split until the
+ * offending rows are alone, and those are logged and dropped (a deck deleted while its score was
+ * pending, an unknown user); the rest are written. A batch that fails for any other reason is
+ * retried with all its rows. On shutdown the flusher keeps retrying what is pending for up to
+ * 25 seconds.
+ * When disabled, every save goes straight to the database.
+ */
+@Component
+public class HistoryWriteBehindBuffer {
+
+    private final Logger log = LoggerFactory.getLogger(HistoryWriteBehindBuffer.class);
+
+    private static final long SHUTDOWN_FLUSH_SECONDS = 25;
+    private static final long SHUTDOWN_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final DeckDao deckDao;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int flushThreshold;
+    private final long flushIntervalNanos;
+    private final int maxPending;
+    private final long offerTimeoutNanos;
+    private final long writeTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private LinkedHashMap<Key, DeckHistory> pending = new LinkedHashMap<>();
+    //the batch being written; until it commits it is still the latest score for its keys
+    private Map<Key, DeckHistory> inFlight = Collections.emptyMap();
+    //rows in pending go out with batch batchesTaken + 1; a failed batch's rows go out with the next one
+    private long batchesTaken;
+    private long batchesCommitted;
+    private boolean running = true;
+    private boolean stopped; //the flusher has exited
+    private long shutdownDeadline;
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+    private final AtomicLong droppedRows = new AtomicLong();
+
+    private final Thread flusher;
+
+    public HistoryWriteBehindBuffer(
+            DeckDao deckDao,
+            @Value("${history.write-behind.enabled:false}") boolean enabled,
+            @Value("${history.write-behind.batch-size:500}") int batchSize,
+            @Value("${history.write-behind.flush-interval-ms:1000}") long flushIntervalMillis,
+            @Value("${history.write-behind.max-pending:10000}") int maxPending,
+            @Value("${history.write-behind.offer-timeout-ms:200}") long offerTimeoutMillis,
+            @Value("${history.write-behind.write-timeout-ms:5000}") long writeTimeoutMillis) {
+        this.deckDao = deckDao;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxPending = maxPending;
+        this.flushThreshold = Math.min(batchSize, maxPending);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        if (enabled) {
+            flusher = new Thread(this::runFlusher, "history-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Records a study score and returns its brain color. correctAnswers may be null, in which
+     * case it is estimated from the percentage as the DAO does.
+     */
+    public int save(long userId, long deckId, double scorePercent, Integer correctAnswers) {
+        if (!enabled) {
+            return correctAnswers == null
+                    ? deckDao.saveUserDeckHistory(userId, deckId, scorePercent)
+                    : deckDao.saveUserDeckHistory(userId, deckId, scorePercent, correctAnswers);
+        }
+        int correct = correctAnswers == null ? JdbcDeckDao.estimateCorrectAnswers(scorePercent) : correctAnswers;
+        DeckHistory history = new DeckHistory(userId, deckId, JdbcDeckDao.getBrainColor(scorePercent), correct);
+        Key key = new Key(userId, deckId);
+
+        lock.lock();
+        try {
+            if (!stopped) {
+                long remaining = offerTimeoutNanos;
+                while (running && pending.size() >= maxPending && !pending.containsKey(key)) {
+                    flushNeeded.signal();
+                    if (remaining <= 0) break;
+                    remaining = notFull.awaitNanos(remaining);
+                }
+                boolean accepted = running && (pending.size() < maxPending || pending.containsKey(key));
+                if (pending.put(key, history) != null) {
+                    coalesced.incrementAndGet();
+                }
+                if (accepted) {
+                    if (pending.size() >= flushThreshold) {
+                        flushNeeded.signal();
+                    }
+                    return history.getScore();
+                }
+                //no room (or shutting down): wait for the flusher to write this row, which keeps it in order with the rest
+                synchronousWrites.incrementAndGet();
+                flushNeeded.signal();
+                long batch = batchesTaken + 1;
+                remaining = writeTimeoutNanos;
+                while (batchesCommitted < batch && !stopped && remaining > 0) {
+                    remaining = committed.awaitNanos(remaining);
+                }
+                if (batchesCommitted >= batch) return history.getScore();
+                //take the row back unless it is already being written
+                pending.remove(key, history);
+                if (!stopped) {
+                    //the database is not keeping up; a direct write could land after a newer score, so turn the caller away
+                    throw new HistoryBacklogException();
+                }
+                //the flusher gave up during shutdown; nothing else writes now
+            }
+        } catch (InterruptedException e) {
+            //the row is queued and will be written; only the wait is cut short
+            Thread.currentThread().interrupt();
+            return history.getScore();
+        } finally {
+            lock.unlock();
+        }
+        return deckDao.saveUserDeckHistory(userId, deckId, scorePercent, correct);
+    }
+
+    /**
+     * The brain color of a score that has been accepted but not written yet, or null.
+     */
+    public Integer pendingScore(long userId, long deckId) {
+        if (!enabled) return null;
+        Key key = new Key(userId, deckId);
+        lock.lock();
+        try {
+            DeckHistory history = pending.get(key);
+            if (history == null) history = inFlight.get(key);
+            return history == null ? null : history.getScore();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        boolean failed = false;
+        while (true) {
+            Map<Key, DeckHistory> batch;
+            lock.lock();
+            try {
+                if (failed) {
+                    //back off before retrying, however full the buffer is
+                    boolean wasRunning = running;
+                    long remaining = running ? flushIntervalNanos : SHUTDOWN_RETRY_NANOS;
+                    while (remaining > 0 && running == wasRunning) {
+                        remaining = flushNeeded.awaitNanos(remaining);
+                    }
+                } else {
+                    long remaining = flushIntervalNanos;
+                    while (running && pending.size() < flushThreshold && remaining > 0) {
+                        remaining = flushNeeded.awaitNanos(remaining);
+                    }
+                }
+                if (pending.isEmpty() && !running) {
+                    stop();
+                    return;
+                }
+                if (!running && failed && System.nanoTime() - shutdownDeadline > 0) {
+                    log.error("Dropped {} study scores; the database was unavailable during shutdown", pending.size());
+                    stop();
+                    return;
+                }
+                if (pending.isEmpty()) continue;
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                inFlight = batch;
+                batchesTaken++;
+                notFull.signalAll();
+            } catch (InterruptedException e) {
+                stop();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            failed = !write(new ArrayList<>(batch.values()));
+
+            lock.lock();
+            try {
+                if (failed) {
+                    //rows go back unless a newer score for the same key arrived meanwhile
+                    batch.forEach(pending::putIfAbsent);
+                } else {
+                    batchesCommitted = batchesTaken;
+                }
+                inFlight = Collections.emptyMap();
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    //call with the lock held
+    private void stop() {
+        stopped = true;
+        committed.signalAll();
+        notFull.signalAll();
+    }
+
+    //false if the batch has to be retried; rows that can never be written are dropped, not retried
+    private boolean write(List<DeckHistory> batch) {
+        long start = System.nanoTime();
+        try {
+            int dropped = 0;
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                dropped += writeOrSplit(batch.subList(from, Math.min(from + batchSize, batch.size())));
+            }
+            long elapsed = System.nanoTime() - start;
+            flushes.incrementAndGet();
+            flushedRows.addAndGet(batch.size() - dropped);
+            flushNanos.addAndGet(elapsed);
+            lastFlushNanos.set(elapsed);
+            return true;
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            log.error("Flushing {} study scores failed; retrying them", batch.size(), e);
+            return false;
+        }
+    }
+
+    //halves a rejected batch until each bad row is alone, so one row cannot hold back the others; returns the rows dropped
+    private int writeOrSplit(List<DeckHistory> rows) {
+        try {
+            deckDao.saveUserDeckHistories(rows);
+            return 0;
+        } catch (DataIntegrityViolationException e) {
+            if (rows.size() == 1) {
+                DeckHistory row = rows.get(0);
+                droppedRows.incrementAndGet();
+                log.warn("Dropped the study score of user {} for deck {}; it can never be written: {}",
+                        row.getUserId(), row.getDeckId(), e.getMostSpecificCause().getMessage());
+                return 1;
+            }
+            int half = rows.size() / 2;
+            return writeOrSplit(rows.subList(0, half)) + writeOrSplit(rows.subList(half, rows.size()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) return;
+        lock.lock();
+        try {
+            running = false;
+            shutdownDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_FLUSH_SECONDS);
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_FLUSH_SECONDS + 5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //rows accepted and not yet committed, including the batch being written
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return pending.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushedRows() {
+        return flushedRows.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public long getSynchronousWrites() {
+        return synchronousWrites.get();
+    }
+
+    public long getDroppedRows() {
+        return droppedRows.get();
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0 : flushNanos.get() / 1_000_000.0 / count;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos.get() / 1_000_000.0;
+    }
+
+    private static final class Key {
+        private final long userId;
+        private final long deckId;
+
+        private Key(long userId, long deckId) {
+            this.userId = userId;
+            this.deckId = deckId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return userId == key.userId && deckId == key.deckId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, deckId);
+        }
+    }
+}
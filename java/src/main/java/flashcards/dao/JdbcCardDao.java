@@ -1,17 +1,34 @@
 package flashcards.dao;
 
 import flashcards.model.Card;
-import org.springframework.dao.DataAccessException;
+import flashcards.model.DeckVersionConflictException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Component
 public class JdbcCardDao implements CardDao{
 
+    //rows pulled per round trip when streaming; Postgres only uses a cursor inside a transaction
+    private static final int STREAM_FETCH_SIZE = 500;
+    //rows sent per executeBatch when bulk importing
+    private static final int INSERT_BATCH_SIZE = 500;
+    private static final String ALL_CARDS = "SELECT card_id, question, answer, image_url, deck_id " +
+            "FROM card WHERE deck_id = ?";
+
+    //deck.card_count and deck.version are maintained here, in the same transaction as the card change
+    private static final String ADJUST_CARD_COUNT = "UPDATE deck SET card_count = card_count + ?, version = version + 1 WHERE deck_id = ?";
+    private static final String BUMP_VERSION = "UPDATE deck SET version = version + 1 WHERE deck_id = ?";
+
     private  final JdbcTemplate jdbcTemplate;
 
     public JdbcCardDao(JdbcTemplate jdbcTemplate) {
@@ -20,52 +37,94 @@ public class JdbcCardDao implements CardDao{
 
     @Override
     public List<Card> getAllCards(long deck_id) {
-        List<Card> cardList = new ArrayList<>();
+        return jdbcTemplate.query(ALL_CARDS, (rs, rowNum) -> mapToRowCard(rs), deck_id);
+    }
 
-        String sql = "SELECT card_id, question, answer, image_url, deck_id " +
-                "FROM card WHERE deck_id = ?";
-        SqlRowSet results = jdbcTemplate.queryForRowSet(sql, deck_id);
-        while (results.next()) {
-            cardList.add(mapToRowCard(results));
-        }
-        return cardList;
+    @Override
+    @Transactional(readOnly = true)
+    public void streamCards(long deck_id, Consumer<Card> consumer) {
+        jdbcTemplate.query(BoundStatement.streaming(ALL_CARDS, STREAM_FETCH_SIZE, deck_id), rs -> {
+            consumer.accept(mapToRowCard(rs));
+        });
     }
 
     @Override
+    @Transactional
     public Card addCard(Card card) {
-        Long card_id = null;
         String sql = "INSERT INTO card( question, answer, image_url, deck_id) " +
-                "VALUES (?, ?, ?, ?) returning card_id";
-        try {
-            card_id = jdbcTemplate.queryForObject(sql, Long.class, card.getQuestion(), card.getAnswer(), card.getImage(), card.getDeckId());
-            System.out.println(card_id);
-//            card.setCardId(card_id);
-        } catch(DataAccessException e){
-            System.out.println(e.getMessage());
-            return null;
-        }
+                "VALUES (?, ?, ?, ?)";
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(BoundStatement.returningKey(sql, "card_id",
+                card.getQuestion(), card.getAnswer(), card.getImage(), card.getDeckId()), keyHolder);
+        jdbcTemplate.update(ADJUST_CARD_COUNT, 1, card.getDeckId());
+        card.setCardId(keyHolder.getKey().longValue());
         return card;
     }
 
     @Override
-    public Card updateCard(Card card) {
+    @Transactional
+    public List<Long> addCards(long deck_id, List<Card> cards) {
+        String sql = "INSERT INTO card(question, answer, image_url, deck_id) VALUES (?, ?, ?, ?)";
+        //one statement, bound and executed once per chunk
+        List<Long> cardIds = jdbcTemplate.execute(BoundStatement.returningKey(sql, "card_id"), (PreparedStatement ps) -> {
+            List<Long> ids = new ArrayList<>(cards.size());
+            for (int start = 0; start < cards.size(); start += INSERT_BATCH_SIZE) {
+                int end = Math.min(start + INSERT_BATCH_SIZE, cards.size());
+                for (Card card : cards.subList(start, end)) {
+                    ps.setString(1, card.getQuestion());
+                    ps.setString(2, card.getAnswer());
+                    ps.setString(3, card.getImage());
+                    ps.setLong(4, deck_id);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+            }
+            return ids;
+        });
+        jdbcTemplate.update(ADJUST_CARD_COUNT, cardIds.size(), deck_id);
+        return cardIds;
+    }
+
+    @Override
+    @Transactional
+    public long updateCard(long deck_id, Card card, Long expectedDeckVersion) {
+        //deck row first, then card, as in deleteCard; the conditional bump is the If-Match check
+        int bumped = expectedDeckVersion == null
+                ? jdbcTemplate.update(BUMP_VERSION, deck_id)
+                : jdbcTemplate.update(BUMP_VERSION + " AND version = ?", deck_id, expectedDeckVersion);
+        List<Long> versions = jdbcTemplate.queryForList("SELECT version FROM deck WHERE deck_id = ?", Long.class, deck_id);
+        if (versions.isEmpty()) return 0;
+        if (bumped == 0) throw new DeckVersionConflictException();
         String sql = "UPDATE card SET question=?, answer=?, image_url=? " +
-                "WHERE card_id=?";
-        try {
-            jdbcTemplate.update(sql, card.getQuestion(), card.getAnswer(), card.getImage(), card.getCardId());
-        }catch(DataAccessException e){
-            return null;
+                "WHERE card_id=? AND deck_id=?";
+        if (jdbcTemplate.update(sql, card.getQuestion(), card.getAnswer(), card.getImage(), card.getCardId(), deck_id) != 1) {
+            //no such card in this deck; undo the bump
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return 0;
         }
-        return card;
+        return versions.get(0);
     }
 
     @Override
-    public boolean deleteCard(long card_id) {
-        String sql = "DELETE FROM card WHERE card_id=?";
-        return jdbcTemplate.update(sql, card_id) == 1;
+    @Transactional
+    public boolean deleteCard(long deck_id, long card_id) {
+        //deck row first, then card: the same lock order as the ON DELETE CASCADE from deck
+        if (jdbcTemplate.update(ADJUST_CARD_COUNT, -1, deck_id) != 1) return false;
+        String sql = "DELETE FROM card WHERE card_id=? AND deck_id=?";
+        if (jdbcTemplate.update(sql, card_id, deck_id) != 1) {
+            //not in this deck, or deleted concurrently; undo the decrement
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return false;
+        }
+        return true;
     }
 
-    private Card mapToRowCard(SqlRowSet results) {
+    private Card mapToRowCard(ResultSet results) throws SQLException {
         Card card = new Card();
         card.setCardId(results.getLong("card_id"));
         card.setQuestion(results.getString("question"));
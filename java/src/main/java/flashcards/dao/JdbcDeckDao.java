@@ -1,34 +1,59 @@
 package flashcards.dao;
 
 import flashcards.model.Deck;
+import flashcards.model.DeckHistory;
+import flashcards.model.DeckSummary;
+import flashcards.model.DeckVersionConflictException;
+import flashcards.model.StudyReportRow;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 @Component
 public class JdbcDeckDao implements DeckDao {
 
+    public static final int DELETING = 0; //hidden while a chunked delete is in progress
     public static final int PRIVATE = 1;
     public static final int UNLISTED = 2;
     public static final int PUBLIC = 3;
-    private final String FULL_DECK = "SELECT d.deck_id, d.genre, d.deck_status, d.deck_name, d.deck_desc, d.owner_id FROM deck AS d ";
+    private final String FULL_DECK = "SELECT d.deck_id, d.genre, d.deck_status, d.deck_name, d.deck_desc, d.owner_id, d.version FROM deck AS d ";
+    //the viewer's history row is at most one per deck (unique user_id, deck_id), so the LEFT JOIN never fans out
+    private final String DECK_SUMMARY = "SELECT d.deck_id, d.genre, d.deck_status, d.deck_name, d.deck_desc, d.owner_id, " +
+            "u.username AS owner_username, d.card_count, " +
+            "COALESCE(h.score, 0) AS score " +
+            "FROM deck AS d JOIN users u ON u.user_id = d.owner_id " +
+            "LEFT JOIN user_deck_history h ON h.deck_id = d.deck_id AND h.user_id = ? ";
 
     private final JdbcTemplate jdbcTemplate;
-    public JdbcDeckDao(JdbcTemplate jdbcTemplate) {this.jdbcTemplate = jdbcTemplate;}
+    private final String upsertHistory;
+
+    public JdbcDeckDao(JdbcTemplate jdbcTemplate, SqlDialect dialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.upsertHistory = dialect.isH2() ? MERGE_HISTORY_H2 : UPSERT_HISTORY;
+    }
 
     @Override
     public Deck createDeck(Deck deck) {
-        String sql = "INSERT INTO deck (owner_id, genre, deck_name, deck_desc, deck_status) VALUES(?, ?, ?, ?, ?) RETURNING deck_id;";
+        //generated keys instead of RETURNING, which H2 does not support
+        String sql = "INSERT INTO deck (owner_id, genre, deck_name, deck_desc, deck_status) VALUES(?, ?, ?, ?, ?);";
         Long deck_id = null; //default
         try {
-            deck_id = jdbcTemplate.queryForObject(sql, Long.class, deck.getOwnerId(), deck.getGenre(),
-                    deck.getDeckName(), deck.getDeckDesc(), deck.getStatus());
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(BoundStatement.returningKey(sql, "deck_id",
+                    deck.getOwnerId(), deck.getGenre(), deck.getDeckName(), deck.getDeckDesc(), deck.getStatus()), keyHolder);
+            deck_id = keyHolder.getKey().longValue();
         } catch (DataAccessException e) {
            // return null; //if exception, return null handle null in controller
         }
@@ -38,11 +63,19 @@ public class JdbcDeckDao implements DeckDao {
     }
 
     @Override
-    public Deck updateDeck(Deck deck) {
-        String sql = "UPDATE deck SET deck_status = ?, deck_name = ?, deck_desc = ?, genre = ?, owner_id = ? " +
-                     "WHERE deck_id = ?;";
+    @Transactional
+    public Deck updateDeck(Deck deck, Long expectedVersion) {
+        String sql = "UPDATE deck SET deck_status = ?, deck_name = ?, deck_desc = ?, genre = ?, owner_id = ?, version = version + 1 " +
+                     "WHERE deck_id = ?";
         try {
-            jdbcTemplate.update(sql, deck.getStatus(), deck.getDeckName(), deck.getDeckDesc(), deck.getGenre(), deck.getOwnerId(), deck.getDeckId());
+            int updated = expectedVersion == null
+                    ? jdbcTemplate.update(sql + ";", deck.getStatus(), deck.getDeckName(), deck.getDeckDesc(), deck.getGenre(), deck.getOwnerId(), deck.getDeckId())
+                    : jdbcTemplate.update(sql + " AND version = ?;", deck.getStatus(), deck.getDeckName(), deck.getDeckDesc(), deck.getGenre(), deck.getOwnerId(), deck.getDeckId(), expectedVersion);
+            //our own write holds the row lock, so this reads the version it produced
+            List<Long> versions = jdbcTemplate.queryForList("SELECT version FROM deck WHERE deck_id = ?;", Long.class, deck.getDeckId());
+            if (versions.isEmpty()) return null;
+            if (updated == 0) throw new DeckVersionConflictException();
+            deck.setVersion(versions.get(0));
         } catch (DataAccessException e) {
             return null;
         }
@@ -51,14 +84,28 @@ public class JdbcDeckDao implements DeckDao {
 
     @Override
     public void deleteDeck(long deckId) {
-        String deleteCards = "DELETE FROM card WHERE deck_id = ?;";
-        jdbcTemplate.update(deleteCards, deckId);
-        String deleteHistory = "DELETE FROM user_deck_history WHERE deck_id = ?;";
-        jdbcTemplate.update(deleteHistory, deckId);
+        //card and user_deck_history rows go with it through ON DELETE CASCADE, atomically in one statement
         String deleteDeck = "DELETE FROM deck WHERE deck_id = ?;";
         jdbcTemplate.update(deleteDeck, deckId);
     }
 
+    @Override
+    public boolean hideDeck(long deckId) {
+        String sql = "UPDATE deck SET deck_status = ?, version = version + 1 WHERE deck_id = ?;";
+        return jdbcTemplate.update(sql, DELETING, deckId) == 1;
+    }
+
+    @Override
+    @Transactional
+    public int deleteCardsChunk(long deckId, int chunkSize) {
+        //lock the deck row before any card, as deleteCard and the cascade do
+        jdbcTemplate.queryForList("SELECT deck_id FROM deck WHERE deck_id = ? FOR UPDATE;", Long.class, deckId);
+        String sql = "DELETE FROM card WHERE card_id IN (SELECT card_id FROM card WHERE deck_id = ? LIMIT ?);";
+        int deleted = jdbcTemplate.update(sql, deckId, chunkSize);
+        jdbcTemplate.update("UPDATE deck SET card_count = card_count - ?, version = version + 1 WHERE deck_id = ?;", deleted, deckId);
+        return deleted;
+    }
+
     @Override
     public Deck getDeckById(Long deckId) {
         Deck deck = null;
@@ -73,7 +120,7 @@ public class JdbcDeckDao implements DeckDao {
     @Override
     public List<Deck> getAllDecks() {
         List<Deck> decks = new ArrayList<>();
-        SqlRowSet result = jdbcTemplate.queryForRowSet(FULL_DECK);
+        SqlRowSet result = jdbcTemplate.queryForRowSet(FULL_DECK + "WHERE d.deck_status <> ?;", DELETING);
         while (result.next()){
             decks.add(mapRowToDeck(result));
         }
@@ -83,8 +130,8 @@ public class JdbcDeckDao implements DeckDao {
     @Override
     public List<Deck> getDecksByOwnerId(long ownerId) {
         List<Deck> decks = new ArrayList<>();
-        String sql = FULL_DECK +  "WHERE d.owner_id = ?;";
-        SqlRowSet result = jdbcTemplate.queryForRowSet(sql, ownerId);
+        String sql = FULL_DECK +  "WHERE d.owner_id = ? AND d.deck_status <> ?;";
+        SqlRowSet result = jdbcTemplate.queryForRowSet(sql, ownerId, DELETING);
         while (result.next()){
             decks.add(mapRowToDeck(result));
         }
@@ -104,6 +151,57 @@ public class JdbcDeckDao implements DeckDao {
 
 
 
+    @Override
+    public List<Deck> getPublicDecksPage(long afterDeckId, String genre, String namePrefix, int limit) {
+        List<Deck> decks = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(FULL_DECK);
+        appendPublicPage(sql, params, afterDeckId, genre, namePrefix, limit);
+        SqlRowSet result = jdbcTemplate.queryForRowSet(sql.toString(), params.toArray());
+        while (result.next()){
+            decks.add(mapRowToDeck(result));
+        }
+        return decks;
+    }
+
+    @Override
+    public List<DeckSummary> getPublicDeckSummariesPage(long viewerId, long afterDeckId, String genre, String namePrefix, int limit) {
+        List<Object> params = new ArrayList<>();
+        params.add(viewerId);
+        StringBuilder sql = new StringBuilder(DECK_SUMMARY);
+        appendPublicPage(sql, params, afterDeckId, genre, namePrefix, limit);
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> mapRowToDeckSummary(rs), params.toArray());
+    }
+
+    @Override
+    public List<DeckSummary> getDeckSummariesByOwnerId(long ownerId, long viewerId) {
+        String sql = DECK_SUMMARY + "WHERE d.owner_id = ? AND d.deck_status <> ? ORDER BY d.deck_id;";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToDeckSummary(rs), viewerId, ownerId, DELETING);
+    }
+
+    private void appendPublicPage(StringBuilder sql, List<Object> params, long afterDeckId, String genre, String namePrefix, int limit) {
+        // served by ix_deck_status_genre_id / ix_deck_status_id, so each page is a bounded index range scan
+        sql.append("WHERE d.deck_status = ? AND d.deck_id > ? ");
+        params.add(PUBLIC);
+        params.add(afterDeckId);
+        if (genre != null && !genre.isEmpty()) {
+            sql.append("AND d.genre = ? ");
+            params.add(genre);
+        }
+        if (namePrefix != null && !namePrefix.isEmpty()) {
+            sql.append("AND lower(d.deck_name) LIKE ? ESCAPE '\\' ");
+            params.add(escapeLike(namePrefix.toLowerCase()) + "%");
+        }
+        sql.append("ORDER BY d.deck_id LIMIT ?;");
+        params.add(limit);
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+
+
     //Get History Methods
     private static final int GREEN = 3;
     private static final int YELLOW = 2;
@@ -120,35 +218,51 @@ public class JdbcDeckDao implements DeckDao {
         return NO_HISTORY;
     }
 
-    @Override
-    public int updateUserDeckHistory(long userId, long deckId, double scorePercent) {
-        // Default to estimating correct answers from percentage and card count
-        return updateUserDeckHistory(userId, deckId, scorePercent, (int) Math.round(scorePercent * 10)); // Rough estimate
-    }
+    //ON CONFLICT makes this idempotent and race free when two tabs finish the same deck
+    private static final String UPSERT_HISTORY = "INSERT INTO user_deck_history(user_id, deck_id, score, correct_answers) VALUES(?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, deck_id) DO UPDATE " +
+            "SET score = EXCLUDED.score, correct_answers = EXCLUDED.correct_answers, last_updated = CURRENT_TIMESTAMP;";
+    //H2 (tests, load test) has no ON CONFLICT ... DO UPDATE; MERGE ... KEY is its equivalent
+    private static final String MERGE_HISTORY_H2 = "MERGE INTO user_deck_history(user_id, deck_id, score, correct_answers, last_updated) " +
+            "KEY(user_id, deck_id) VALUES(?, ?, ?, ?, CURRENT_TIMESTAMP);";
 
     @Override
-    public int createUserDeckHistory(long userId, long deckId, double scorePercent) {
-        // Default to estimating correct answers from percentage and card count
-        return createUserDeckHistory(userId, deckId, scorePercent, (int) Math.round(scorePercent * 10)); // Rough estimate
+    public int saveUserDeckHistory(long userId, long deckId, double scorePercent) {
+        return saveUserDeckHistory(userId, deckId, scorePercent, estimateCorrectAnswers(scorePercent));
     }
 
     @Override
-    public int updateUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers) {
-        String sql = "UPDATE user_deck_history SET score = ?, correct_answers = ?, last_updated = CURRENT_TIMESTAMP WHERE user_id = ? AND deck_id = ?;";
+    public int saveUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers) {
         int score = getBrainColor(scorePercent);
-        jdbcTemplate.update(sql, score, correctAnswers, userId, deckId);
+        jdbcTemplate.update(upsertHistory, userId, deckId, score, correctAnswers);
         return score;
     }
 
     @Override
-    public int createUserDeckHistory(long userId, long deckId, double scorePercent, int correctAnswers) {
-        String sql = "INSERT INTO user_deck_history(user_id, deck_id, score, correct_answers) VALUES(?, ?, ?, ?);";
-        int score = getBrainColor(scorePercent);
-        jdbcTemplate.update(sql, userId, deckId, score, correctAnswers);
-        return score;
+    public void saveUserDeckHistories(List<DeckHistory> histories) {
+        jdbcTemplate.batchUpdate(upsertHistory, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                DeckHistory history = histories.get(i);
+                ps.setLong(1, history.getUserId());
+                ps.setLong(2, history.getDeckId());
+                ps.setInt(3, history.getScore());
+                ps.setInt(4, history.getCorrectAnswers());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return histories.size();
+            }
+        });
     }
 
-    private int getBrainColor(double scorePercent) {
+    // Default to estimating correct answers from percentage and card count
+    static int estimateCorrectAnswers(double scorePercent) {
+        return (int) Math.round(scorePercent * 10); // Rough estimate
+    }
+
+    static int getBrainColor(double scorePercent) {
         int score = RED;
         if(scorePercent >= .5)
             score = YELLOW;
@@ -157,25 +271,26 @@ public class JdbcDeckDao implements DeckDao {
         return score;
     }
 
+    //num_cards is the maintained deck.card_count: no card join, and decks without cards are no longer dropped
+    private static final String STUDY_REPORT = "SELECT d.deck_id, d.card_count, d.deck_name, d.genre, udh.score, udh.correct_answers, udh.last_updated " +
+            "FROM user_deck_history udh JOIN deck d ON d.deck_id = udh.deck_id WHERE udh.user_id = ? ORDER BY udh.last_updated;";
+    //rows pulled per round trip when streaming the report
+    private static final int REPORT_FETCH_SIZE = 500;
+    //columns are read by position, in STUDY_REPORT's select order
+    private static final RowMapper<StudyReportRow> STUDY_REPORT_ROW = (rs, rowNum) -> new StudyReportRow(
+            rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getString(4), rs.getInt(5), rs.getInt(6), rs.getTimestamp(7));
+
     @Override
-    public List<Map<String, Object>> getUserStudyReport(long userId) {
-        List<Map<String, Object>> reportData = new ArrayList<>();
-        String sql = "SELECT d.deck_id, count(c.deck_id) as num_cards, d.deck_name, d.genre, udh.score, udh.correct_answers, udh.last_updated FROM user_deck_history udh JOIN deck d ON d.deck_id = udh.deck_id JOIN card c ON c.deck_id = d.deck_id WHERE udh.user_id = ? GROUP BY d.deck_id, d.deck_name, d.genre, udh.score, udh.correct_answers, udh.last_updated ORDER BY udh.last_updated;";
-        
-        SqlRowSet result = jdbcTemplate.queryForRowSet(sql, userId);
-        while (result.next()) {
-            Map<String, Object> row = new HashMap<>();
-            row.put("deck_id", result.getLong("deck_id"));
-            row.put("num_cards", result.getInt("num_cards"));
-            row.put("deck_name", result.getString("deck_name"));
-            row.put("genre", result.getString("genre"));
-            row.put("score", result.getInt("score"));
-            row.put("correct_answers", result.getInt("correct_answers"));
-            row.put("last_updated", result.getTimestamp("last_updated"));
-            reportData.add(row);
-        }
-        
-        return reportData;
+    public List<StudyReportRow> getUserStudyReport(long userId) {
+        return jdbcTemplate.query(STUDY_REPORT, STUDY_REPORT_ROW, userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUserStudyReport(long userId, Consumer<StudyReportRow> consumer) {
+        jdbcTemplate.query(BoundStatement.streaming(STUDY_REPORT, REPORT_FETCH_SIZE, userId), rs -> {
+            consumer.accept(STUDY_REPORT_ROW.mapRow(rs, 0));
+        });
     }
 
     private Deck mapRowToDeck(SqlRowSet row) {
@@ -186,6 +301,21 @@ public class JdbcDeckDao implements DeckDao {
         deck.setDeckDesc(row.getString("deck_desc"));
         deck.setGenre(row.getString("genre"));
         deck.setOwnerId(row.getInt("owner_id"));
+        deck.setVersion(row.getLong("version"));
+        return deck;
+    }
+
+    private DeckSummary mapRowToDeckSummary(ResultSet row) throws SQLException {
+        DeckSummary deck = new DeckSummary();
+        deck.setDeckId(row.getLong("deck_id"));
+        deck.setStatus(row.getInt("deck_status"));
+        deck.setDeckName(row.getString("deck_name"));
+        deck.setDeckDesc(row.getString("deck_desc"));
+        deck.setGenre(row.getString("genre"));
+        deck.setOwnerId(row.getLong("owner_id"));
+        deck.setOwnerUsername(row.getString("owner_username"));
+        deck.setCardCount(row.getInt("card_count"));
+        deck.setScore(row.getInt("score"));
         return deck;
     }
 }
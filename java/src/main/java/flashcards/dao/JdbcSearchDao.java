@@ -0,0 +1,91 @@
+package flashcards.dao;
+
+import flashcards.model.SearchHit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Full-text search over deck names and descriptions and card questions and answers. On
+ * Postgres it matches the generated search_vector columns through their GIN indexes and ranks
+ * with ts_rank; name and question words weigh more than description and answer words. Each
+ * side ranks at most max-candidates matches, so a term found in millions of cards costs no more
+ * than a rare one. Those are whichever matches the index scan returns first, not the best ones,
+ * so the ranking is exact only up to max-candidates matches and approximate past it. H2 has no
+ * tsvector, so there it falls back to a substring match.
+ */
+@Component
+public class JdbcSearchDao implements SearchDao {
+
+    //the rules of the deck listings: public decks, and the viewer's own unless being deleted
+    private static final String VISIBLE = "(d.deck_status = " + JdbcDeckDao.PUBLIC +
+            " OR (d.owner_id = ? AND d.deck_status <> " + JdbcDeckDao.DELETING + ")) ";
+
+    //the inner LIMIT has no ORDER BY on purpose: ordering would rank every match, which is what the cap avoids
+    private static final String DECKS_PG = "SELECT hit.deck_id, hit.deck_name, hit.deck_desc, " +
+            "ts_rank(hit.search_vector, plainto_tsquery('english', ?)) AS rank " +
+            "FROM (SELECT d.deck_id, d.deck_name, d.deck_desc, d.search_vector FROM deck d " +
+            "WHERE d.search_vector @@ plainto_tsquery('english', ?) AND " + VISIBLE + "LIMIT ?) hit " +
+            "ORDER BY rank DESC, hit.deck_id LIMIT ?;";
+    private static final String CARDS_PG = "SELECT hit.card_id, hit.deck_id, hit.deck_name, hit.question, hit.answer, " +
+            "ts_rank(hit.search_vector, plainto_tsquery('english', ?)) AS rank " +
+            "FROM (SELECT c.card_id, c.deck_id, d.deck_name, c.question, c.answer, c.search_vector " +
+            "FROM card c JOIN deck d ON d.deck_id = c.deck_id " +
+            "WHERE c.search_vector @@ plainto_tsquery('english', ?) AND " + VISIBLE + "LIMIT ?) hit " +
+            "ORDER BY rank DESC, hit.card_id LIMIT ?;";
+
+    //a match in the name or question ranks above one only in the description or answer, as weights A/B do above
+    private static final String DECKS_H2 = "SELECT d.deck_id, d.deck_name, d.deck_desc, " +
+            "CASE WHEN lower(d.deck_name) LIKE ? ESCAPE '\\' THEN 1.0 ELSE 0.4 END AS rank " +
+            "FROM deck d WHERE (lower(d.deck_name) LIKE ? ESCAPE '\\' OR lower(d.deck_desc) LIKE ? ESCAPE '\\') AND " + VISIBLE +
+            "ORDER BY rank DESC, d.deck_id LIMIT ?;";
+    private static final String CARDS_H2 = "SELECT c.card_id, c.deck_id, d.deck_name, c.question, c.answer, " +
+            "CASE WHEN lower(c.question) LIKE ? ESCAPE '\\' THEN 1.0 ELSE 0.4 END AS rank " +
+            "FROM card c JOIN deck d ON d.deck_id = c.deck_id " +
+            "WHERE (lower(c.question) LIKE ? ESCAPE '\\' OR lower(c.answer) LIKE ? ESCAPE '\\') AND " + VISIBLE +
+            "ORDER BY rank DESC, c.card_id LIMIT ?;";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean h2;
+    private final int maxCandidates;
+
+    public JdbcSearchDao(JdbcTemplate jdbcTemplate, SqlDialect dialect, @Value("${search.max-candidates:10000}") int maxCandidates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.h2 = dialect.isH2();
+        this.maxCandidates = maxCandidates;
+    }
+
+    @Override
+    public List<SearchHit> search(String query, long viewerId, int limit) {
+        List<SearchHit> hits = new ArrayList<>();
+        if (h2) {
+            String pattern = "%" + JdbcDeckDao.escapeLike(query.toLowerCase()) + "%";
+            hits.addAll(jdbcTemplate.query(DECKS_H2, (rs, rowNum) -> deckHit(rs.getLong("deck_id"), rs.getString("deck_name"),
+                    rs.getString("deck_desc"), rs.getDouble("rank")), pattern, pattern, pattern, viewerId, limit));
+            hits.addAll(jdbcTemplate.query(CARDS_H2, (rs, rowNum) -> cardHit(rs.getLong("card_id"), rs.getLong("deck_id"),
+                    rs.getString("deck_name"), rs.getString("question"), rs.getString("answer"), rs.getDouble("rank")),
+                    pattern, pattern, pattern, viewerId, limit));
+        } else {
+            hits.addAll(jdbcTemplate.query(DECKS_PG, (rs, rowNum) -> deckHit(rs.getLong("deck_id"), rs.getString("deck_name"),
+                    rs.getString("deck_desc"), rs.getDouble("rank")), query, query, viewerId, maxCandidates, limit));
+            hits.addAll(jdbcTemplate.query(CARDS_PG, (rs, rowNum) -> cardHit(rs.getLong("card_id"), rs.getLong("deck_id"),
+                    rs.getString("deck_name"), rs.getString("question"), rs.getString("answer"), rs.getDouble("rank")),
+                    query, query, viewerId, maxCandidates, limit));
+        }
+        //each side is already in rank order; merge them and keep the best limit overall
+        hits.sort(Comparator.comparingDouble(SearchHit::getRank).reversed());
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    private static SearchHit deckHit(long deckId, String deckName, String deckDesc, double rank) {
+        return new SearchHit(SearchHit.DECK, deckId, null, deckName, deckName, deckDesc, rank);
+    }
+
+    private static SearchHit cardHit(long cardId, long deckId, String deckName, String question, String answer, double rank) {
+        return new SearchHit(SearchHit.CARD, deckId, cardId, deckName, question, answer, rank);
+    }
+}
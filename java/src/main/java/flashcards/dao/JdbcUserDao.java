@@ -1,27 +1,40 @@
 package flashcards.dao;
 
-import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import flashcards.model.UserNotFoundException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import flashcards.model.User;
 
 @Component
 public class JdbcUserDao implements UserDao {
 
+    private static final int USERNAME_FETCH_SIZE = 10000;
+
+    //the unique indexes on username and lower(username) decide, so two sign-ups for one name cannot both win
+    private static final String INSERT_USER = "INSERT INTO users (username, password_hash, role) VALUES (?, ?, ?) " +
+            "ON CONFLICT DO NOTHING RETURNING user_id;";
+    //H2 (tests, load test) has no ON CONFLICT; the plain insert fails on the same unique constraint instead
+    private static final String INSERT_USER_H2 = "INSERT INTO users (username, password_hash, role) VALUES (?, ?, ?);";
+
     private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final boolean h2;
 
-    public JdbcUserDao(JdbcTemplate jdbcTemplate) {
+    public JdbcUserDao(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, SqlDialect dialect) {
         this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.h2 = dialect.isH2();
     }
 
     @Override
@@ -30,7 +43,7 @@ public class JdbcUserDao implements UserDao {
 
         Integer userId = null;
         try {
-            userId = jdbcTemplate.queryForObject("select user_id from users where username = ?", Integer.class, username);
+            userId = jdbcTemplate.queryForObject("select user_id from users where lower(username) = ?", Integer.class, username.toLowerCase());
 
         } catch(EmptyResultDataAccessException e) {
             throw new UsernameNotFoundException("User " + username + " was not found.");
@@ -71,36 +84,37 @@ public class JdbcUserDao implements UserDao {
     public User findByUsername(String username) {
         if(username == null) throw new IllegalArgumentException("Username cannot be null");
 
-        for (User user : this.findAll()) {
-            if( user.getUsername().toLowerCase().equals(username.toLowerCase())) {
-                return user;
-            }
+        // lower(username) is backed by ix_users_username_lower, so this is a single index probe
+        String sql = "SELECT user_id, username, password_hash, role FROM users WHERE lower(username) = ?";
+        SqlRowSet results = jdbcTemplate.queryForRowSet(sql, username.toLowerCase());
+        if(results.next()) {
+            return mapRowToUser(results);
         }
         throw new UsernameNotFoundException("User " + username + " was not found.");
     }
 
     @Override
     public boolean create(String username, String password, String role) {
-        boolean userCreated = false;
-
-        // create user
-        String insertUser = "insert into users (username,password_hash,role) values(?,?,?)";
-        String password_hash = new BCryptPasswordEncoder().encode(password);
+        String password_hash = passwordEncoder.encode(password); //bounded hashing pool, may throw PasswordHashingBusyException
         String ssRole = role.toUpperCase().startsWith("ROLE") ? role.toUpperCase() : "ROLE_" + role.toUpperCase();
 
-        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
-        String id_column = "user_id";
-        userCreated = jdbcTemplate.update(con -> {
-                    PreparedStatement ps = con.prepareStatement(insertUser, new String[]{id_column});
-                    ps.setString(1, username);
-                    ps.setString(2, password_hash);
-                    ps.setString(3, ssRole);
-                    return ps;
-                }
-                , keyHolder) == 1;
-        // int newUserId = (int) keyHolder.getKeys().get(id_column);
-
-        return userCreated;
+        if (h2) {
+            try {
+                return jdbcTemplate.update(INSERT_USER_H2, username, password_hash, ssRole) == 1;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        // no row back means the name was taken
+        return !jdbcTemplate.queryForList(INSERT_USER, Long.class, username, password_hash, ssRole).isEmpty();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsernames(Consumer<String> consumer) {
+        jdbcTemplate.query(BoundStatement.streaming("SELECT lower(username) FROM users", USERNAME_FETCH_SIZE), rs -> {
+            consumer.accept(rs.getString(1));
+        });
     }
 
     private User mapRowToUser(SqlRowSet rs) {
@@ -0,0 +1,58 @@
+package flashcards.dao;
+
+import flashcards.model.Deck;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memoizes deck rows for the lifetime of the current HTTP request, so the @PreAuthorize
+ * check and the handler it guards share a single lookup. Outside of a request it reads
+ * straight through to the DAO.
+ */
+@Component
+public class RequestDeckCache {
+
+    private static final String ATTRIBUTE = RequestDeckCache.class.getName();
+
+    private final DeckDao deckDao;
+
+    public RequestDeckCache(DeckDao deckDao) {
+        this.deckDao = deckDao;
+    }
+
+    public Deck getDeckById(Long deckId) {
+        Map<Long, Deck> decks = requestDecks(true);
+        if (decks == null) {
+            return deckDao.getDeckById(deckId);
+        }
+        if (decks.containsKey(deckId)) {
+            return decks.get(deckId);
+        }
+        Deck deck = deckDao.getDeckById(deckId);
+        decks.put(deckId, deck);
+        return deck;
+    }
+
+    public void evict(Long deckId) {
+        Map<Long, Deck> decks = requestDecks(false);
+        if (decks != null) {
+            decks.remove(deckId);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, Deck> requestDecks(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return null;
+        Map<Long, Deck> decks = (Map<Long, Deck>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (decks == null && create) {
+            decks = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, decks, RequestAttributes.SCOPE_REQUEST);
+        }
+        return decks;
+    }
+}
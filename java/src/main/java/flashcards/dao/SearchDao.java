@@ -0,0 +1,11 @@
+package flashcards.dao;
+
+import flashcards.model.SearchHit;
+
+import java.util.List;
+
+public interface SearchDao {
+
+    //public decks and cards plus viewerId's own (0 for none), best match first, at most limit of them
+    List<SearchHit> search(String query, long viewerId, int limit);
+}
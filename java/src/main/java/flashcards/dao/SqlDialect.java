@@ -0,0 +1,44 @@
+package flashcards.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Which database the DAOs write SQL for, read once from spring.datasource.url. Production runs
+ * on PostgreSQL; the tests, and the load test and benchmarks by default, run on H2, which has
+ * no ON CONFLICT, RETURNING, tsvector or expression indexes, so a few statements keep an H2
+ * variant. Any other database fails startup rather than getting the PostgreSQL statements.
+ *
+ * The H2 variants are what the unit and controller tests run. The PostgreSQL statements are
+ * only covered against a real PostgreSQL: the load test with -Dloadtest.datasource.url, and
+ * the benchmarks with -Dbench.url, whose setup checks them.
+ */
+@Component
+public class SqlDialect {
+
+    private final boolean h2;
+
+    public SqlDialect(@Value("${spring.datasource.url}") String url) {
+        if (url.startsWith("jdbc:h2:")) {
+            h2 = true;
+        } else if (url.startsWith("jdbc:postgresql:")) {
+            h2 = false;
+        } else {
+            throw new IllegalStateException("Unsupported database " + url + ", expected jdbc:postgresql: or jdbc:h2:");
+        }
+    }
+
+    public boolean isH2() {
+        return h2;
+    }
+
+    //H2 has no EXPLAIN options
+    public String explainPrefix() {
+        return h2 ? "EXPLAIN ANALYZE " : "EXPLAIN (ANALYZE, BUFFERS) ";
+    }
+
+    @Override
+    public String toString() {
+        return h2 ? "H2" : "PostgreSQL";
+    }
+}
@@ -3,6 +3,7 @@ package flashcards.dao;
 import flashcards.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserDao {
 
@@ -14,5 +15,9 @@ public interface UserDao {
 
     int findIdByUsername(String username);
 
+    //false if the username (case-insensitively) is already taken
     boolean create(String username, String password, String role);
+
+    //every username, lower-cased, read with a cursor
+    void streamUsernames(Consumer<String> consumer);
 }
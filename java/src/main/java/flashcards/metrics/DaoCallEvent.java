@@ -0,0 +1,29 @@
+package flashcards.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call into CardDao, DeckDao or UserDao, emitted by MethodTimingPostProcessor.
+ */
+@Name("flashcards.DaoCall")
+@Label("DAO Call")
+@Category({"Flashcards", "Data Access"})
+@Description("A DAO method call and the request it served")
+@StackTrace(false)
+class DaoCallEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Deck Id")
+    @Description("The deck id argument, 0 if the method has none")
+    long deckId;
+
+    @Label("Request URI")
+    String requestUri;
+}
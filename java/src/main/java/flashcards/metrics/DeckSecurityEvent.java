@@ -0,0 +1,32 @@
+package flashcards.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A DeckSecurityService check and its decision, emitted by MethodTimingPostProcessor.
+ */
+@Name("flashcards.DeckSecurity")
+@Label("Deck Security Check")
+@Category({"Flashcards", "Security"})
+@Description("A @PreAuthorize deck check and whether it granted access")
+@StackTrace(false)
+class DeckSecurityEvent extends Event {
+
+    @Label("Check")
+    String check;
+
+    @Label("Deck Id")
+    @Description("The deck id argument, 0 if the check has none")
+    long deckId;
+
+    @Label("Granted")
+    boolean granted;
+
+    @Label("Request URI")
+    String requestUri;
+}
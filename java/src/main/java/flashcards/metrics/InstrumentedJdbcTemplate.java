@@ -0,0 +1,134 @@
+package flashcards.metrics;
+
+import flashcards.dao.BoundStatement;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.*;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * The application's JdbcTemplate. Every query, update and batch goes through one of these
+ * execute methods, so counting here gives the SQL statements per request in LatencyMetrics.
+ * A JDBC batch or a ConnectionCallback counts once. With jdbc.slow-query.enabled the same
+ * methods time each statement and hand the slow ones to SlowQueryLog. For a streamed query
+ * (a RowCallbackHandler over a PreparedStatementCreator) the time spent in the row callback,
+ * which usually includes writing to the HTTP client, is left out, so a slow client does not
+ * look like a slow query; the time of the fetch round trips between rows is still counted.
+ */
+@Component
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+
+    private final LatencyMetrics metrics;
+    private final SlowQueryLog slowQueries;
+    //the argument array of the statement about to run; JdbcTemplate builds its setter right before execute
+    private final ThreadLocal<Object[]> pendingArgs = new ThreadLocal<>();
+    //row callback time and row count of the streamed query about to run
+    private final ThreadLocal<StreamedRows> pendingStream = new ThreadLocal<>();
+
+    public InstrumentedJdbcTemplate(DataSource dataSource, LatencyMetrics metrics, SlowQueryLog slowQueries) {
+        super(dataSource);
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+    }
+
+    @Override
+    public <T> T execute(ConnectionCallback<T> action) throws DataAccessException {
+        metrics.sqlStatement();
+        if (!slowQueries.isEnabled()) return super.execute(action);
+        pendingArgs.remove();
+        long start = System.nanoTime();
+        T result = super.execute(action);
+        captureIfSlow(sql(action), null, result, start);
+        return result;
+    }
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+        metrics.sqlStatement();
+        if (!slowQueries.isEnabled()) return super.execute(action);
+        pendingArgs.remove();
+        long start = System.nanoTime();
+        T result = super.execute(action);
+        captureIfSlow(sql(action), null, result, start);
+        return result;
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action) throws DataAccessException {
+        metrics.sqlStatement();
+        if (!slowQueries.isEnabled()) return super.execute(psc, action);
+        Object[] args = psc instanceof BoundStatement ? ((BoundStatement) psc).getArgs() : pendingArgs.get();
+        pendingArgs.remove();
+        StreamedRows stream = pendingStream.get();
+        pendingStream.remove();
+        long start = System.nanoTime();
+        T result = super.execute(psc, action);
+        if (stream == null) {
+            captureIfSlow(sql(psc), args, result, start);
+        } else {
+            captureIfSlow(sql(psc), args, stream.rows, start + stream.callbackNanos);
+        }
+        return result;
+    }
+
+    @Override
+    public <T> T execute(CallableStatementCreator csc, CallableStatementCallback<T> action) throws DataAccessException {
+        metrics.sqlStatement();
+        if (!slowQueries.isEnabled()) return super.execute(csc, action);
+        pendingArgs.remove();
+        long start = System.nanoTime();
+        T result = super.execute(csc, action);
+        captureIfSlow(sql(csc), null, result, start);
+        return result;
+    }
+
+    @Override
+    public void query(PreparedStatementCreator psc, RowCallbackHandler rch) throws DataAccessException {
+        if (!slowQueries.isEnabled()) {
+            super.query(psc, rch);
+            return;
+        }
+        StreamedRows stream = new StreamedRows();
+        pendingStream.set(stream);
+        super.query(psc, rs -> {
+            long start = System.nanoTime();
+            try {
+                rch.processRow(rs);
+            } finally {
+                stream.callbackNanos += System.nanoTime() - start;
+                stream.rows++;
+            }
+        });
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
+        if (slowQueries.isEnabled()) pendingArgs.set(args);
+        return super.newArgPreparedStatementSetter(args);
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgTypePreparedStatementSetter(Object[] args, int[] argTypes) {
+        if (slowQueries.isEnabled()) pendingArgs.set(args);
+        return super.newArgTypePreparedStatementSetter(args, argTypes);
+    }
+
+    private void captureIfSlow(String sql, Object[] args, Object result, long start) {
+        long nanos = System.nanoTime() - start;
+        if (slowQueries.isSlow(nanos)) {
+            slowQueries.record(sql, args, result, nanos);
+        }
+    }
+
+    private static class StreamedRows {
+        long callbackNanos;
+        int rows;
+    }
+
+    //DAO lambdas that build their own statement do not expose the SQL
+    private static String sql(Object source) {
+        String sql = source instanceof SqlProvider ? ((SqlProvider) source).getSql() : null;
+        return sql != null ? sql : "(SQL not available: " + source.getClass().getSimpleName() + ")";
+    }
+}
@@ -0,0 +1,122 @@
+package flashcards.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per timed method (the DAOs and DeckSecurityService, see
+ * MethodTimingPostProcessor) and per endpoint, plus SQL statements per request. Lookups on the
+ * hot path are map gets keyed by objects that already exist, so recording does not allocate
+ * once a method or endpoint has been seen.
+ */
+@Component
+public class LatencyMetrics {
+
+    private final ConcurrentHashMap<Method, Histogram> byMethod = new ConcurrentHashMap<>();
+    //overloads share one histogram under their name
+    private final ConcurrentHashMap<String, Histogram> byMethodName = new ConcurrentHashMap<>();
+    //pattern -> HTTP method -> stats
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, EndpointStats>> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder sqlStatements = new LongAdder();
+    //statements run by the current request; one counter per thread, reused
+    private final ThreadLocal<long[]> requestStatements = ThreadLocal.withInitial(() -> new long[1]);
+
+    public Histogram forMethod(Method method) {
+        Histogram histogram = byMethod.get(method);
+        if (histogram == null) {
+            String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+            histogram = byMethod.computeIfAbsent(method, m -> byMethodName.computeIfAbsent(name, n -> new Histogram()));
+        }
+        return histogram;
+    }
+
+    public void sqlStatement() {
+        sqlStatements.increment();
+        requestStatements.get()[0]++;
+    }
+
+    public void beginRequest() {
+        requestStatements.get()[0] = 0;
+    }
+
+    public void endRequest(String httpMethod, String pattern, long nanos) {
+        ConcurrentHashMap<String, EndpointStats> byHttpMethod = endpoints.get(pattern);
+        if (byHttpMethod == null) {
+            byHttpMethod = endpoints.computeIfAbsent(pattern, p -> new ConcurrentHashMap<>());
+        }
+        EndpointStats stats = byHttpMethod.get(httpMethod);
+        if (stats == null) {
+            stats = byHttpMethod.computeIfAbsent(httpMethod, m -> new EndpointStats());
+        }
+        stats.latency.record(nanos);
+        stats.statements.record(requestStatements.get()[0]);
+    }
+
+    public long getSqlStatements() {
+        return sqlStatements.sum();
+    }
+
+    public Map<String, Object> snapshot(boolean buckets) {
+        Map<String, Object> methods = new TreeMap<>();
+        byMethodName.forEach((name, histogram) -> methods.put(name, latency(histogram, buckets)));
+
+        Map<String, Object> requests = new TreeMap<>();
+        endpoints.forEach((pattern, byHttpMethod) -> byHttpMethod.forEach((httpMethod, stats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("latency", latency(stats.latency, buckets));
+            entry.put("sqlStatements", counts(stats.statements, buckets));
+            requests.put(httpMethod + " " + pattern, entry);
+        }));
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("sqlStatements", getSqlStatements());
+        snapshot.put("methods", methods);
+        snapshot.put("requests", requests);
+        return snapshot;
+    }
+
+    public void reset() {
+        byMethodName.values().forEach(Histogram::reset);
+        endpoints.clear();
+        sqlStatements.reset();
+    }
+
+    public static Map<String, Object> latency(Histogram histogram, boolean buckets) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", histogram.getCount());
+        stats.put("meanMillis", histogram.getMean() / 1e6);
+        stats.put("p50Millis", histogram.getValueAtQuantile(0.50) / 1e6);
+        stats.put("p90Millis", histogram.getValueAtQuantile(0.90) / 1e6);
+        stats.put("p99Millis", histogram.getValueAtQuantile(0.99) / 1e6);
+        stats.put("maxMillis", histogram.getMax() / 1e6);
+        if (buckets) {
+            Map<Double, Long> millis = new LinkedHashMap<>();
+            histogram.getBuckets().forEach((upper, count) -> millis.put(upper / 1e6, count));
+            stats.put("buckets", millis);
+        }
+        return stats;
+    }
+
+    private static Map<String, Object> counts(Histogram histogram, boolean buckets) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mean", histogram.getMean());
+        stats.put("p50", histogram.getValueAtQuantile(0.50));
+        stats.put("p99", histogram.getValueAtQuantile(0.99));
+        stats.put("max", histogram.getMax());
+        if (buckets) {
+            stats.put("buckets", histogram.getBuckets());
+        }
+        return stats;
+    }
+
+    private static final class EndpointStats {
+        private final Histogram latency = new Histogram();
+        private final Histogram statements = new Histogram();
+    }
+}
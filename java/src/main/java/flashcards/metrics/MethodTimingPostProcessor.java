@@ -0,0 +1,124 @@
+package flashcards.metrics;
+
+import flashcards.dao.CardDao;
+import flashcards.dao.DeckDao;
+import flashcards.dao.UserDao;
+import flashcards.security.DeckSecurityService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every public method of the DAOs and DeckSecurityService into LatencyMetrics, and emits
+ * a DaoCallEvent or DeckSecurityEvent for JFR recordings. Beans that are already proxied (for
+ * @Transactional) get the timing advice added in front of the existing advice, so a
+ * transaction's commit counts towards the method; the others get a new proxy.
+ */
+@Component
+public class MethodTimingPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    private static final Class<?>[] TIMED = {CardDao.class, DeckDao.class, UserDao.class, DeckSecurityService.class};
+
+    public MethodTimingPostProcessor(LatencyMetrics metrics) {
+        this.advisor = new DefaultPointcutAdvisor(new TimedPointcut(), new TimingInterceptor(metrics));
+        this.beforeExistingAdvisors = true;
+    }
+
+    private static final class TimedPointcut extends StaticMethodMatcherPointcut {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            if (method.getDeclaringClass() == Object.class) return false;
+            for (Class<?> timed : TIMED) {
+                if (timed.isAssignableFrom(targetClass)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class TimingInterceptor implements MethodInterceptor {
+        private final LatencyMetrics metrics;
+        //position of each method's deck id parameter, -1 if it has none
+        private final ConcurrentHashMap<Method, Integer> deckIdArgs = new ConcurrentHashMap<>();
+
+        private TimingInterceptor(LatencyMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            //separate paths so the JIT can drop the event allocation while JFR is not recording
+            return invocation.getThis() instanceof DeckSecurityService ? invokeCheck(invocation) : invokeDao(invocation);
+        }
+
+        private Object invokeDao(MethodInvocation invocation) throws Throwable {
+            Histogram histogram = metrics.forMethod(invocation.getMethod());
+            DaoCallEvent event = new DaoCallEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                histogram.record(System.nanoTime() - start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.method = name(invocation.getMethod());
+                    event.deckId = deckId(invocation);
+                    event.requestUri = RequestUris.current();
+                    event.commit();
+                }
+            }
+        }
+
+        private Object invokeCheck(MethodInvocation invocation) throws Throwable {
+            Histogram histogram = metrics.forMethod(invocation.getMethod());
+            DeckSecurityEvent event = new DeckSecurityEvent();
+            event.begin();
+            long start = System.nanoTime();
+            Object result = null;
+            try {
+                result = invocation.proceed();
+                return result;
+            } finally {
+                histogram.record(System.nanoTime() - start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.check = invocation.getMethod().getName();
+                    event.deckId = deckId(invocation);
+                    event.granted = Boolean.TRUE.equals(result);
+                    event.requestUri = RequestUris.current();
+                    event.commit();
+                }
+            }
+        }
+
+        private long deckId(MethodInvocation invocation) {
+            int index = deckIdArgs.computeIfAbsent(invocation.getMethod(), TimingInterceptor::deckIdArg);
+            if (index < 0) return 0;
+            Object arg = invocation.getArguments()[index];
+            return arg instanceof Number ? ((Number) arg).longValue() : 0;
+        }
+
+        //a long or int parameter whose name mentions the deck, e.g. deckId or deck_id
+        private static int deckIdArg(Method method) {
+            Parameter[] parameters = method.getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                Class<?> type = parameters[i].getType();
+                boolean numeric = type == long.class || type == Long.class || type == int.class || type == Integer.class;
+                if (numeric && parameters[i].getName().toLowerCase(Locale.ROOT).startsWith("deck")) return i;
+            }
+            return -1;
+        }
+
+        private static String name(Method method) {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package flashcards.metrics;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records each request's latency and SQL statement count under its mapped path pattern.
+ * Runs ahead of Spring Security so the JWT and principal lookups are included. Streamed
+ * responses are timed until the handler returns, not until the last byte is written.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final String UNMAPPED = "(unmapped)";
+
+    private final LatencyMetrics metrics;
+
+    public RequestMetricsFilter(LatencyMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        metrics.beginRequest();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            metrics.endRequest(request.getMethod(), pattern == null ? UNMAPPED : pattern.toString(), System.nanoTime() - start);
+        }
+    }
+}
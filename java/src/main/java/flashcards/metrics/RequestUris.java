@@ -0,0 +1,23 @@
+package flashcards.metrics;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * The URI of the request the current thread is serving, for JFR events; empty on background
+ * threads. Only called once an event is known to be recorded.
+ */
+public final class RequestUris {
+
+    private RequestUris() {
+    }
+
+    public static String current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return ((ServletRequestAttributes) attributes).getRequest().getRequestURI();
+        }
+        return "";
+    }
+}
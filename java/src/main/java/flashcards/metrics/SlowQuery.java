@@ -0,0 +1,63 @@
+package flashcards.metrics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One statement that took longer than the slow-query threshold. Bind parameters are kept as
+ * shapes (type, and length for strings), never values. The plan is filled in later, and only
+ * for the sampled SELECTs.
+ */
+public class SlowQuery {
+
+    private final Instant capturedAt;
+    private final String sql;
+    private final String caller;
+    private final List<String> parameters;
+    private final Integer rows;
+    private final double millis;
+    private volatile String plan;
+
+    public SlowQuery(Instant capturedAt, String sql, String caller, List<String> parameters, Integer rows, double millis) {
+        this.capturedAt = capturedAt;
+        this.sql = sql;
+        this.caller = caller;
+        this.parameters = parameters;
+        this.rows = rows;
+        this.millis = millis;
+    }
+
+    public Instant getCapturedAt() {
+        return capturedAt;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    //the DAO method that ran the statement
+    public String getCaller() {
+        return caller;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    //rows returned or updated, null when the result does not tell
+    public Integer getRows() {
+        return rows;
+    }
+
+    public double getMillis() {
+        return millis;
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+}
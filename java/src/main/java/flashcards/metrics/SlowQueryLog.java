@@ -0,0 +1,227 @@
+package flashcards.metrics;
+
+import flashcards.dao.SqlDialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diagnostic mode for InstrumentedJdbcTemplate. When enabled, statements slower than
+ * threshold-ms are kept in a ring buffer of the last capacity captures. A sample of the slow
+ * SELECTs (explain-sample-rate, and at most once per explain-min-interval-ms per SQL) is
+ * re-run as EXPLAIN (ANALYZE, BUFFERS) on a background thread, over its own read-only
+ * connection, and the plan is attached to the capture. Statements that write are never explained.
+ */
+@Component
+public class SlowQueryLog {
+
+    private final Logger log = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final int EXPLAIN_TIMEOUT_SECONDS = 30;
+
+    private final DataSource dataSource;
+    private final SqlDialect dialect;
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private final double explainSampleRate;
+    private final long explainMinIntervalNanos;
+
+    private final SlowQuery[] ring;
+    private int next;
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong explained = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> lastExplained = new ConcurrentHashMap<>();
+    //one explain at a time, a few waiting; the rest are skipped
+    private final ThreadPoolExecutor explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(4), r -> {
+                Thread thread = new Thread(r, "slow-query-explain");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    public SlowQueryLog(
+            DataSource dataSource,
+            SqlDialect dialect,
+            @Value("${jdbc.slow-query.enabled:false}") boolean enabled,
+            @Value("${jdbc.slow-query.threshold-ms:200}") long thresholdMillis,
+            @Value("${jdbc.slow-query.capacity:100}") int capacity,
+            @Value("${jdbc.slow-query.explain-sample-rate:0.1}") double explainSampleRate,
+            @Value("${jdbc.slow-query.explain-min-interval-ms:60000}") long explainMinIntervalMillis) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.enabled = enabled;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.ring = new SlowQuery[capacity];
+        this.explainSampleRate = explainSampleRate;
+        this.explainMinIntervalNanos = TimeUnit.MILLISECONDS.toNanos(explainMinIntervalMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos;
+    }
+
+    /**
+     * Records a slow statement. args are the bind values when the statement was run with an
+     * argument array or as a BoundStatement, otherwise null; they are only used to explain the
+     * query, never stored.
+     */
+    public void record(String sql, Object[] args, Object result, long nanos) {
+        SlowQuery query = new SlowQuery(Instant.now(), sql, caller(), shapes(args), rows(result), nanos / 1e6);
+        synchronized (ring) {
+            ring[next] = query;
+            next = (next + 1) % ring.length;
+        }
+        captured.incrementAndGet();
+        log.warn("Slow SQL ({} ms) from {}: {}", String.format("%.1f", query.getMillis()), query.getCaller(), sql);
+
+        if (shouldExplain(sql, args)) {
+            Object[] bind = args == null ? new Object[0] : args.clone();
+            explainer.execute(() -> explain(query, bind));
+        }
+    }
+
+    /**
+     * Captures, newest first.
+     */
+    public List<SlowQuery> getQueries() {
+        List<SlowQuery> queries = new ArrayList<>();
+        synchronized (ring) {
+            for (int i = 1; i <= ring.length; i++) {
+                SlowQuery query = ring[(next - i + ring.length) % ring.length];
+                if (query == null) break;
+                queries.add(query);
+            }
+        }
+        return queries;
+    }
+
+    public void clear() {
+        synchronized (ring) {
+            Arrays.fill(ring, null);
+            next = 0;
+        }
+        lastExplained.clear();
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    public long getCaptured() {
+        return captured.get();
+    }
+
+    public long getExplained() {
+        return explained.get();
+    }
+
+    private boolean shouldExplain(String sql, Object[] args) {
+        if (sql == null || explainSampleRate <= 0) return false;
+        String normalized = sql.trim().toUpperCase(Locale.ROOT);
+        if (!normalized.startsWith("SELECT") || normalized.contains(" FOR UPDATE")) return false;
+        if (args == null && sql.indexOf('?') >= 0) return false; //bind values unknown
+        if (ThreadLocalRandom.current().nextDouble() >= explainSampleRate) return false;
+        long now = System.nanoTime();
+        Long last = lastExplained.get(sql);
+        if (last == null) return lastExplained.putIfAbsent(sql, now) == null;
+        //false if another thread explained it in the meantime
+        return now - last >= explainMinIntervalNanos && lastExplained.replace(sql, last, now);
+    }
+
+    private void explain(SlowQuery query, Object[] args) {
+        String sql = query.getSql().trim();
+        if (sql.endsWith(";")) sql = sql.substring(0, sql.length() - 1);
+        try (Connection con = dataSource.getConnection()) {
+            con.setReadOnly(true);
+            try (PreparedStatement ps = con.prepareStatement(dialect.explainPrefix() + sql)) {
+                ps.setQueryTimeout(EXPLAIN_TIMEOUT_SECONDS);
+                for (int i = 0; i < args.length; i++) {
+                    Object arg = args[i] instanceof SqlParameterValue ? ((SqlParameterValue) args[i]).getValue() : args[i];
+                    ps.setObject(i + 1, arg);
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (plan.length() > 0) plan.append('\n');
+                        plan.append(rs.getString(1));
+                    }
+                }
+                query.setPlan(plan.toString());
+                explained.incrementAndGet();
+            }
+        } catch (SQLException e) {
+            query.setPlan("EXPLAIN failed: " + e.getMessage());
+        }
+    }
+
+    private static List<String> shapes(Object[] args) {
+        if (args == null) return Collections.emptyList();
+        List<String> shapes = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            Object value = arg instanceof SqlParameterValue ? ((SqlParameterValue) arg).getValue() : arg;
+            if (value == null) {
+                shapes.add("null");
+            } else if (value instanceof CharSequence) {
+                shapes.add("String(" + ((CharSequence) value).length() + ")");
+            } else {
+                shapes.add(value.getClass().getSimpleName());
+            }
+        }
+        return shapes;
+    }
+
+    private static Integer rows(Object result) {
+        if (result instanceof Collection) return ((Collection<?>) result).size();
+        if (result instanceof Integer) return (Integer) result;
+        if (result instanceof int[]) {
+            int rows = 0;
+            for (int count : (int[]) result) rows += Math.max(count, 0);
+            return rows;
+        }
+        return null;
+    }
+
+    //the first application frame outside the metrics package, usually a DAO method
+    private static String caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("flashcards.") && !f.getClassName().startsWith("flashcards.metrics."))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+                .orElse("unknown"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+}
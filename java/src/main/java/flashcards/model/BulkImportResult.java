@@ -0,0 +1,44 @@
+package flashcards.model;
+
+import java.util.List;
+
+/**
+ * Result of a bulk card import: the generated card ids, in input order, and the insert rate.
+ */
+public class BulkImportResult {
+
+    private List<Long> cardIds;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+
+    public BulkImportResult() {}
+
+    public BulkImportResult(List<Long> cardIds, long elapsedNanos) {
+        this.cardIds = cardIds;
+        this.elapsedMillis = elapsedNanos / 1_000_000;
+        this.rowsPerSecond = elapsedNanos == 0 ? 0 : cardIds.size() * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public List<Long> getCardIds() {
+        return cardIds;
+    }
+    public int getCount() {
+        return cardIds == null ? 0 : cardIds.size();
+    }
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setCardIds(List<Long> cardIds) {
+        this.cardIds = cardIds;
+    }
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+}
@@ -15,6 +15,7 @@ public class Deck {
     private String deckDesc;
     @NotNull
     private int status; //1-Private 2-Unlisted 3-Public
+    private long version; //bumped by every write to the deck or its cards
 
     //DEFAULT CONSTRUCTOR
     public Deck(){}
@@ -36,6 +37,9 @@ public class Deck {
         return status;
     }
     public String getGenre() { return genre; }
+    public long getVersion() {
+        return version;
+    }
 
     //SETTERS
     public void setDeckId(long deckId) {
@@ -54,4 +58,7 @@ public class Deck {
         this.status = status;
     }
     public void setGenre(String genre) { this.genre = genre; }
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
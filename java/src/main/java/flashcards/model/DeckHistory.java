@@ -0,0 +1,47 @@
+package flashcards.model;
+
+/**
+ * One user_deck_history row waiting to be written. score is the brain color (1 red, 2 yellow, 3 green).
+ */
+public class DeckHistory {
+
+    private long userId;
+    private long deckId;
+    private int score;
+    private int correctAnswers;
+
+    public DeckHistory() {}
+
+    public DeckHistory(long userId, long deckId, int score, int correctAnswers) {
+        this.userId = userId;
+        this.deckId = deckId;
+        this.score = score;
+        this.correctAnswers = correctAnswers;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+    public long getDeckId() {
+        return deckId;
+    }
+    public int getScore() {
+        return score;
+    }
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+
+    public void setUserId(long userId) {
+        this.userId = userId;
+    }
+    public void setDeckId(long deckId) {
+        this.deckId = deckId;
+    }
+    public void setScore(int score) {
+        this.score = score;
+    }
+    public void setCorrectAnswers(int correctAnswers) {
+        this.correctAnswers = correctAnswers;
+    }
+}
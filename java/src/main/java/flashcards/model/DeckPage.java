@@ -0,0 +1,34 @@
+package flashcards.model;
+
+import java.util.List;
+
+/**
+ * One page of the public deck catalog. nextCursor is the deck id to pass as
+ * "after" for the following page, or null when there are no more decks.
+ */
+public class DeckPage {
+
+    private List<Deck> decks;
+    private Long nextCursor;
+
+    public DeckPage() {}
+
+    public DeckPage(List<Deck> decks, Long nextCursor) {
+        this.decks = decks;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Deck> getDecks() {
+        return decks;
+    }
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setDecks(List<Deck> decks) {
+        this.decks = decks;
+    }
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,34 @@
+package flashcards.model;
+
+/**
+ * A deck as listed on the deck pages: the deck plus its owner's username, its card count
+ * and the viewing user's brain color score (0 when they have no history), all read in one query.
+ */
+public class DeckSummary extends Deck {
+
+    private String ownerUsername;
+    private int cardCount;
+    private int score; //0 none, 1 red, 2 yellow, 3 green
+
+    public DeckSummary() {}
+
+    public String getOwnerUsername() {
+        return ownerUsername;
+    }
+    public int getCardCount() {
+        return cardCount;
+    }
+    public int getScore() {
+        return score;
+    }
+
+    public void setOwnerUsername(String ownerUsername) {
+        this.ownerUsername = ownerUsername;
+    }
+    public void setCardCount(int cardCount) {
+        this.cardCount = cardCount;
+    }
+    public void setScore(int score) {
+        this.score = score;
+    }
+}
@@ -0,0 +1,10 @@
+package flashcards.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//If-Match named a deck version that is no longer current
+@ResponseStatus( value = HttpStatus.PRECONDITION_FAILED, reason = "Deck Has Changed.")
+public class DeckVersionConflictException extends RuntimeException {
+
+}
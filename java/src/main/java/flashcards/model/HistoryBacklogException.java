@@ -0,0 +1,10 @@
+package flashcards.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+//the write-behind buffer is full and the score could not be written in time
+@ResponseStatus( value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Study Scores Are Backed Up.")
+public class HistoryBacklogException extends RuntimeException {
+
+}
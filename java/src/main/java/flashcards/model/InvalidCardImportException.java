@@ -0,0 +1,12 @@
+package flashcards.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus( value = HttpStatus.BAD_REQUEST, reason = "Invalid Card Import.")
+public class InvalidCardImportException extends RuntimeException {
+
+    public InvalidCardImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package flashcards.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus( value = HttpStatus.BAD_REQUEST, reason = "Invalid Deck.")
+public class InvalidDeckException extends RuntimeException {
+
+    public InvalidDeckException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package flashcards.model;
+
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * DTO for a refresh token handed back to /refresh or /logout.
+ */
+public class RefreshTokenDTO {
+
+   @NotEmpty
+   private String refreshToken;
+
+   public String getRefreshToken() {
+      return refreshToken;
+   }
+
+   public void setRefreshToken(String refreshToken) {
+      this.refreshToken = refreshToken;
+   }
+}
@@ -0,0 +1,76 @@
+package flashcards.model;
+
+/**
+ * One GET /api/search result. A deck hit has the deck name as title and its description as
+ * detail; a card hit has the question and answer, plus the name of the deck it belongs to.
+ * Ranks of both kinds are on the same scale, higher is better.
+ */
+public class SearchHit {
+
+    public static final String DECK = "deck";
+    public static final String CARD = "card";
+
+    private String kind;
+    private long deckId;
+    private Long cardId; //null for deck hits
+    private String deckName;
+    private String title;
+    private String detail;
+    private double rank;
+
+    public SearchHit() {}
+
+    public SearchHit(String kind, long deckId, Long cardId, String deckName, String title, String detail, double rank) {
+        this.kind = kind;
+        this.deckId = deckId;
+        this.cardId = cardId;
+        this.deckName = deckName;
+        this.title = title;
+        this.detail = detail;
+        this.rank = rank;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+    public long getDeckId() {
+        return deckId;
+    }
+    public Long getCardId() {
+        return cardId;
+    }
+    public String getDeckName() {
+        return deckName;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public String getDetail() {
+        return detail;
+    }
+    public double getRank() {
+        return rank;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+    public void setDeckId(long deckId) {
+        this.deckId = deckId;
+    }
+    public void setCardId(Long cardId) {
+        this.cardId = cardId;
+    }
+    public void setDeckName(String deckName) {
+        this.deckName = deckName;
+    }
+    public void setTitle(String title) {
+        this.title = title;
+    }
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+    public void setRank(double rank) {
+        this.rank = rank;
+    }
+}
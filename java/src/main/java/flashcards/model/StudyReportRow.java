@@ -0,0 +1,61 @@
+package flashcards.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.sql.Timestamp;
+
+/**
+ * One line of a user's study report. Serializes to the same snake_case keys the
+ * report page has always read, in a fixed order.
+ */
+@JsonPropertyOrder({"deck_id", "num_cards", "deck_name", "genre", "score", "correct_answers", "last_updated"})
+public class StudyReportRow {
+
+    private final long deckId;
+    private final int numCards;
+    private final String deckName;
+    private final String genre;
+    private final int score; //1 red, 2 yellow, 3 green
+    private final int correctAnswers;
+    private final Timestamp lastUpdated;
+
+    public StudyReportRow(long deckId, int numCards, String deckName, String genre, int score, int correctAnswers, Timestamp lastUpdated) {
+        this.deckId = deckId;
+        this.numCards = numCards;
+        this.deckName = deckName;
+        this.genre = genre;
+        this.score = score;
+        this.correctAnswers = correctAnswers;
+        this.lastUpdated = lastUpdated;
+    }
+
+    @JsonProperty("deck_id")
+    public long getDeckId() {
+        return deckId;
+    }
+    @JsonProperty("num_cards")
+    public int getNumCards() {
+        return numCards;
+    }
+    @JsonProperty("deck_name")
+    public String getDeckName() {
+        return deckName;
+    }
+    @JsonProperty("genre")
+    public String getGenre() {
+        return genre;
+    }
+    @JsonProperty("score")
+    public int getScore() {
+        return score;
+    }
+    @JsonProperty("correct_answers")
+    public int getCorrectAnswers() {
+        return correctAnswers;
+    }
+    @JsonProperty("last_updated")
+    public Timestamp getLastUpdated() {
+        return lastUpdated;
+    }
+}
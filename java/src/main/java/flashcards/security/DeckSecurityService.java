@@ -1,21 +1,20 @@
 package flashcards.security;
 
-import flashcards.dao.DeckDao;
-import flashcards.dao.UserDao;
+import flashcards.dao.JdbcDeckDao;
+import flashcards.dao.RequestDeckCache;
 import flashcards.model.Deck;
-import flashcards.model.User;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
 @Service("deckSecurity")
 public class DeckSecurityService {
     
-    private final DeckDao deckDao;
-    private final UserDao userDao;
+    private final RequestDeckCache deckCache;
+    private final PrincipalCache principalCache;
     
-    public DeckSecurityService(DeckDao deckDao, UserDao userDao) {
-        this.deckDao = deckDao;
-        this.userDao = userDao;
+    public DeckSecurityService(RequestDeckCache deckCache, PrincipalCache principalCache) {
+        this.deckCache = deckCache;
+        this.principalCache = principalCache;
     }
     
     private boolean isAdmin(Authentication auth) {
@@ -33,9 +32,9 @@ public class DeckSecurityService {
     private boolean isOwner(Long deckId, Authentication auth) {
         if (!isAuthenticated(auth)) return false;
         try {
-            Deck deck = deckDao.getDeckById(deckId);
-            User user = userDao.findByUsername(auth.getName());
-            return user != null && user.getId() == deck.getOwnerId();
+            Deck deck = deckCache.getDeckById(deckId);
+            PrincipalCache.Principal principal = principalCache.get(auth.getName());
+            return principal.getId() == deck.getOwnerId();
         } catch (Exception e) {
             return false;
         }
@@ -43,7 +42,7 @@ public class DeckSecurityService {
     
     private int getDeckStatus(Long deckId) {
         try {
-            Deck deck = deckDao.getDeckById(deckId);
+            Deck deck = deckCache.getDeckById(deckId);
             return deck.getStatus();
         } catch (Exception e) {
             return 0; // Invalid deck
@@ -63,14 +62,17 @@ public class DeckSecurityService {
         return false;
     }
     
+    //a deck being deleted (or missing) cannot be changed, not even by an admin
     public boolean canModify(Long deckId, Authentication auth) {
         if (!isAuthenticated(auth)) return false;
+        if (getDeckStatus(deckId) == JdbcDeckDao.DELETING) return false;
         return isAdmin(auth) || isOwner(deckId, auth);
     }
     
  
     public boolean canDelete(Long deckId, Authentication auth) {
         if (!isAuthenticated(auth)) return false;
+        if (getDeckStatus(deckId) == JdbcDeckDao.DELETING) return false;
         return isAdmin(auth) || isOwner(deckId, auth);
     }
     
@@ -83,8 +85,8 @@ public class DeckSecurityService {
         if (isAdmin(auth)) return true;
         
         try {
-            User user = userDao.findByUsername(auth.getName());
-            return user != null && user.getId().equals(userId);
+            PrincipalCache.Principal principal = principalCache.get(auth.getName());
+            return userId != null && principal.getId() == userId;
         } catch (Exception e) {
             return false;
         }
@@ -0,0 +1,169 @@
+package flashcards.security;
+
+import flashcards.dao.UserDao;
+import flashcards.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-evicting cache from username to the id and role of an authenticated user.
+ * The JWT subject has already been verified by the time the security layer asks for it,
+ * so the database only needs to be consulted on a miss.
+ */
+@Component
+public class PrincipalCache {
+
+    private final UserDao userDao;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // access-ordered so the eldest entry is the least recently used one; guarded by itself
+    private final LinkedHashMap<String, Entry> entries;
+
+    public PrincipalCache(
+            UserDao userDao,
+            @Value("${security.principal-cache.max-size:10000}") int maxSize,
+            @Value("${security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userDao = userDao;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PrincipalCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached principal for the username, loading it from the database on a miss.
+     * Throws UsernameNotFoundException if the user does not exist; misses are never cached.
+     */
+    public Principal get(String username) {
+        String key = username.toLowerCase();
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return entry.principal;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        User user = userDao.findByUsername(username);
+        Principal principal = new Principal(user.getId(), user.getUsername(), isAdmin(user));
+        synchronized (entries) {
+            entries.put(key, new Entry(principal, now));
+        }
+        return principal;
+    }
+
+    /**
+     * The user id of the caller, for queries that show a viewer their own decks and scores.
+     * 0 for anonymous callers and users that no longer exist: it owns no decks and matches no
+     * history rows, so they only see public decks, with score 0.
+     */
+    public long viewerId(Authentication authentication) {
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) return 0;
+        try {
+            return get(authentication.getName()).getId();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    public void invalidate(String username) {
+        if (username == null) return;
+        synchronized (entries) {
+            entries.remove(username.toLowerCase());
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static boolean isAdmin(User user) {
+        return user.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getName()));
+    }
+
+    private static final class Entry {
+        private final Principal principal;
+        private final long loadedAt;
+
+        private Entry(Principal principal, long loadedAt) {
+            this.principal = principal;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * The subset of a user the security checks need.
+     */
+    public static final class Principal {
+        private final long id;
+        private final String username;
+        private final boolean admin;
+
+        Principal(long id, String username, boolean admin) {
+            this.id = id;
+            this.username = username;
+            this.admin = admin;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public boolean isAdmin() {
+            return admin;
+        }
+    }
+}
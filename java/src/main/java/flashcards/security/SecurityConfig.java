@@ -1,14 +1,11 @@
 package flashcards.security;
 
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import flashcards.security.jwt.JWTConfigurer;
 import flashcards.security.jwt.TokenProvider;
@@ -32,18 +29,21 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         this.jwtAccessDeniedHandler = jwtAccessDeniedHandler;
     }
     
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-    
+    //the PasswordEncoder bean is BoundedPasswordEncoder
+
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http
             .authorizeRequests()
                 .antMatchers("/api/login").permitAll()
                 .antMatchers("/api/register").permitAll()
+                .antMatchers(HttpMethod.GET, "/api/register/available").permitAll()
+                .antMatchers("/api/refresh").permitAll()
+                .antMatchers("/api/logout").permitAll()
                 .antMatchers("/api/deck/public").permitAll()
+                .antMatchers(HttpMethod.GET, "/api/deck/catalog").permitAll()
+                .antMatchers(HttpMethod.GET, "/api/deck/catalog/summary").permitAll()
+                .antMatchers(HttpMethod.GET, "/api/search").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/deck/*/card").permitAll()
                 .antMatchers(HttpMethod.GET, "/api/deck/*").permitAll()
                 .anyRequest().authenticated()
@@ -0,0 +1,229 @@
+package flashcards.security;
+
+import flashcards.dao.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over every (lower-cased) username, so the sign-up form's availability check can
+ * answer "available" for a name that was never registered without a query. A "might be taken"
+ * answer still goes to the database. Built from the users table at startup and again every
+ * rebuild-interval-minutes, which also picks up users inserted outside the API; names
+ * registered through the API are added as they are created.
+ */
+@Component
+public class UsernameFilter {
+
+    private final Logger log = LoggerFactory.getLogger(UsernameFilter.class);
+
+    private final UserDao userDao;
+    private final long expectedUsers;
+    private final double falsePositiveRate;
+    private final long rebuildIntervalMinutes;
+
+    private volatile Bits bits;
+    //set while a rebuild reads the table, so names registered meanwhile land in both
+    private volatile Bits building;
+
+    private final AtomicLong definitelyAvailable = new AtomicLong();
+    private final AtomicLong databaseChecks = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "username-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UsernameFilter(
+            UserDao userDao,
+            @Value("${security.username-filter.expected-users:1000000}") long expectedUsers,
+            @Value("${security.username-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${security.username-filter.rebuild-interval-minutes:60}") long rebuildIntervalMinutes) {
+        this.userDao = userDao;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildIntervalMinutes = rebuildIntervalMinutes;
+    }
+
+    //a database that is down at startup only means every check goes to the database until the next rebuild
+    @PostConstruct
+    public void start() {
+        rebuildQuietly();
+        if (rebuildIntervalMinutes > 0) {
+            rebuilder.scheduleWithFixedDelay(this::rebuildQuietly, rebuildIntervalMinutes, rebuildIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Whether the username can still be registered. Names the filter has never seen are answered
+     * from memory; the rest are looked up.
+     */
+    public boolean isAvailable(String username) {
+        if (!mightExist(username)) {
+            definitelyAvailable.incrementAndGet();
+            return true;
+        }
+        databaseChecks.incrementAndGet();
+        try {
+            userDao.findIdByUsername(username);
+            return false;
+        } catch (UsernameNotFoundException e) {
+            falsePositives.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * False only if the username has certainly never been registered.
+     */
+    public boolean mightExist(String username) {
+        Bits current = bits;
+        return current == null || current.mightContain(key(username));
+    }
+
+    public void add(String username) {
+        String key = key(username);
+        Bits current = bits;
+        if (current != null) current.add(key);
+        Bits next = building;
+        if (next != null) next.add(key);
+    }
+
+    /**
+     * Reloads the filter from the users table, sized for twice the current users (at least
+     * expected-users) so it stays accurate while the table grows.
+     */
+    public void rebuild() {
+        long started = System.nanoTime();
+        Bits current = bits;
+        long users = current == null ? 0 : current.added.get();
+        Bits next = new Bits(Math.max(expectedUsers, 2 * users), falsePositiveRate);
+        building = next;
+        try {
+            userDao.streamUsernames(next::add);
+            bits = next;
+        } finally {
+            building = null;
+        }
+        log.info("Username filter built from {} users in {} ms ({} KB)", next.added.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), next.words.length() / 128);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Rebuilding the username filter failed; keeping the previous one", e);
+        }
+    }
+
+    public long getUsers() {
+        Bits current = bits;
+        return current == null ? 0 : current.added.get();
+    }
+
+    public long getBits() {
+        Bits current = bits;
+        return current == null ? 0 : current.size;
+    }
+
+    public int getHashes() {
+        Bits current = bits;
+        return current == null ? 0 : current.hashes;
+    }
+
+    public long getDefinitelyAvailable() {
+        return definitelyAvailable.get();
+    }
+
+    public long getDatabaseChecks() {
+        return databaseChecks.get();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * The bit array. Readers and writers never lock: bits are only ever set.
+     */
+    static final class Bits {
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashes;
+        private final AtomicLong added = new AtomicLong();
+
+        Bits(long expected, double falsePositiveRate) {
+            //m = -n ln p / (ln 2)^2, k = m/n ln 2
+            long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+            this.words = new AtomicLongArray(wordCount);
+            this.size = (long) wordCount * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) size / expected * Math.log(2)));
+        }
+
+        void add(String key) {
+            long hash = hash(key);
+            long h1 = hash >>> 32;
+            long h2 = hash & 0xFFFFFFFFL;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    current = words.get(word);
+                }
+            }
+            added.incrementAndGet();
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash(key);
+            long h1 = hash >>> 32;
+            long h2 = hash & 0xFFFFFFFFL;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        //FNV-1a over the chars, then the murmur3 finalizer to spread the bits
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
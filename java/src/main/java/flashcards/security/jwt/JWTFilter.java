@@ -33,17 +33,26 @@ public class JWTFilter extends GenericFilterBean {
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
             throws IOException, ServletException {
+        JwtFilterEvent event = new JwtFilterEvent();
+        event.begin();
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         String jwt = resolveToken(httpServletRequest);
         String requestURI = httpServletRequest.getRequestURI();
 
-        if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-            Authentication authentication = tokenProvider.getAuthentication(jwt);
+        Authentication authentication = StringUtils.hasText(jwt) ? tokenProvider.resolveAuthentication(jwt) : null;
+        if (authentication != null) {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             LOG.debug("set Authentication to com.flashcards.security context for '{}', uri: {}", authentication.getName(), requestURI);
         } else {
             LOG.debug("no valid JWT token found, uri: {}", requestURI);
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.requestUri = requestURI;
+            event.tokenPresent = jwt != null;
+            event.authenticated = authentication != null;
+            event.commit();
+        }
 
         filterChain.doFilter(servletRequest, servletResponse);
     }
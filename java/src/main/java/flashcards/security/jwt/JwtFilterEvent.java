@@ -0,0 +1,28 @@
+package flashcards.security.jwt;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JWTFilter resolving the caller of one request; the rest of the filter chain is not included.
+ */
+@Name("flashcards.JwtFilter")
+@Label("JWT Filter")
+@Category({"Flashcards", "Security"})
+@Description("Bearer token resolution for a request")
+@StackTrace(false)
+class JwtFilterEvent extends Event {
+
+    @Label("Request URI")
+    String requestUri;
+
+    @Label("Token Present")
+    boolean tokenPresent;
+
+    @Label("Authenticated")
+    boolean authenticated;
+}
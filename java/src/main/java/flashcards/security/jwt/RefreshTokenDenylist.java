@@ -0,0 +1,84 @@
+package flashcards.security.jwt;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids of refresh tokens that were used (rotated) or revoked, each kept until the token's own
+ * expiry. Stored as two parallel long arrays with open addressing, 16 bytes per slot, and
+ * expired ids are dropped whenever the table would grow. Held in memory, so a revocation is
+ * only seen by the instance that made it.
+ */
+@Component
+public class RefreshTokenDenylist {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //id 0 marks an empty slot; TokenProvider never issues it
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] expiresAt = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Denylists the id until expiresAtMillis. Returns false if it was already denylisted, so
+     * of two requests presenting the same refresh token only one gets to rotate it.
+     */
+    public synchronized boolean revoke(long id, long expiresAtMillis) {
+        if (id == 0) throw new IllegalArgumentException("Token id 0 is reserved");
+        int slot = slot(ids, id);
+        if (ids[slot] == id) {
+            if (expiresAt[slot] > System.currentTimeMillis()) return false;
+            expiresAt[slot] = expiresAtMillis;
+            return true;
+        }
+        if ((size + 1) * 2 > ids.length) {
+            rebuild();
+            slot = slot(ids, id);
+        }
+        ids[slot] = id;
+        expiresAt[slot] = expiresAtMillis;
+        size++;
+        return true;
+    }
+
+    public synchronized boolean isRevoked(long id) {
+        int slot = slot(ids, id);
+        return ids[slot] == id && expiresAt[slot] > System.currentTimeMillis();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    //drops expired ids, then grows if the table is still at least half full
+    private void rebuild() {
+        long now = System.currentTimeMillis();
+        int live = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0 && expiresAt[i] > now) live++;
+        }
+        int capacity = ids.length;
+        while ((live + 1) * 2 > capacity) capacity *= 2;
+        long[] newIds = new long[capacity];
+        long[] newExpiresAt = new long[capacity];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != 0 && expiresAt[i] > now) {
+                int slot = slot(newIds, ids[i]);
+                newIds[slot] = ids[i];
+                newExpiresAt[slot] = expiresAt[i];
+            }
+        }
+        ids = newIds;
+        expiresAt = newExpiresAt;
+        size = live;
+    }
+
+    //the slot holding id, or the empty slot where it would go (linear probing)
+    private static int slot(long[] table, long id) {
+        int mask = table.length - 1;
+        int slot = Long.hashCode(id * 0x9E3779B97F4A7C15L) & mask;
+        while (table[slot] != 0 && table[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
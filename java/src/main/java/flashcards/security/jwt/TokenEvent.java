@@ -0,0 +1,43 @@
+package flashcards.security.jwt;
+
+import flashcards.metrics.RequestUris;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * TokenProvider signing a token or parsing and verifying one. Hits in the verified-token
+ * cache do not parse and emit nothing.
+ */
+@Name("flashcards.Token")
+@Label("JWT Sign/Parse")
+@Category({"Flashcards", "Security"})
+@Description("An HS512 token signature or signature check")
+@StackTrace(false)
+class TokenEvent extends Event {
+
+    static final String SIGN = "sign";
+    static final String PARSE = "parse";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Valid")
+    boolean valid;
+
+    @Label("Request URI")
+    String requestUri;
+
+    void finish(String operation, boolean valid) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.valid = valid;
+            this.requestUri = RequestUris.current();
+            commit();
+        }
+    }
+}
@@ -15,9 +15,13 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
@@ -26,30 +30,54 @@ public class TokenProvider implements InitializingBean {
     private final Logger log = LoggerFactory.getLogger(TokenProvider.class);
 
     private static final String AUTHORITIES_KEY = "auth";
+    private static final String TYPE_KEY = "typ";
+    private static final String REFRESH_TYPE = "refresh";
+    //when the password login that started the session happened, in epoch seconds as in OpenID Connect
+    private static final String AUTH_TIME_KEY = "auth_time";
 
     private final String base64Secret;
     private final long tokenValidityInMilliseconds;
     private final long tokenValidityInMillisecondsForRememberMe;
+    private final long sessionMaxAgeInMilliseconds;
+    private final int verifiedTokenCacheSize;
 
     private Key key;
+    private JwtParser parser;
+    private final SecureRandom random = new SecureRandom();
+
+    // tokens whose signature has already been checked, evicted LRU and ignored past their exp; guarded by itself
+    private final LinkedHashMap<String, VerifiedToken> verifiedTokens;
 
 
     public TokenProvider(
             @Value("${jwt.base64-secret}") String base64Secret,
             @Value("${jwt.token-validity-in-seconds}") long tokenValidityInSeconds,
-            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe) {
+            @Value("${jwt.token-validity-in-seconds-for-remember-me}") long tokenValidityInSecondsForRememberMe,
+            @Value("${jwt.session-max-age-in-seconds:604800}") long sessionMaxAgeInSeconds,
+            @Value("${jwt.verified-token-cache-size:10000}") int verifiedTokenCacheSize) {
         this.base64Secret = base64Secret;
         this.tokenValidityInMilliseconds = tokenValidityInSeconds * 1000;
         this.tokenValidityInMillisecondsForRememberMe = tokenValidityInSecondsForRememberMe * 1000;
+        this.sessionMaxAgeInMilliseconds = sessionMaxAgeInSeconds * 1000;
+        this.verifiedTokenCacheSize = verifiedTokenCacheSize;
+        this.verifiedTokens = new LinkedHashMap<String, VerifiedToken>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > TokenProvider.this.verifiedTokenCacheSize;
+            }
+        };
     }
 
     @Override
     public void afterPropertiesSet() {
         byte[] keyBytes = Decoders.BASE64.decode(base64Secret);
         this.key = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
+        TokenEvent event = new TokenEvent();
+        event.begin();
         String authorities = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(","));
@@ -62,48 +90,233 @@ public class TokenProvider implements InitializingBean {
             validity = new Date(now + this.tokenValidityInMilliseconds);
         }
 
-        return Jwts.builder()
+        String token = Jwts.builder()
                 .setSubject(authentication.getName())
                 .claim(AUTHORITIES_KEY, authorities)
                 .signWith(key, SignatureAlgorithm.HS512)
                 .setExpiration(validity)
                 .compact();
+        event.finish(TokenEvent.SIGN, true);
+        return token;
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * A refresh token for the subject of a password login, starting a session that ends
+     * jwt.session-max-age-in-seconds from now however often it is refreshed. It carries no
+     * authorities and cannot be used as an access token; exchange it at /refresh.
+     */
+    public String createRefreshToken(Authentication authentication) {
+        return createRefreshToken(authentication.getName(), System.currentTimeMillis());
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
+    /**
+     * The next refresh token of the same session, replacing one exchanged at /refresh.
+     */
+    public String createRefreshToken(RefreshToken previous) {
+        return createRefreshToken(previous.getSubject(), previous.getAuthTime());
+    }
+
+    //valid for the remember-me period, but never past the end of the session
+    private String createRefreshToken(String subject, long authTime) {
+        TokenEvent event = new TokenEvent();
+        event.begin();
+        long id;
+        do {
+            id = random.nextLong();
+        } while (id == 0);
+        long expiresAt = Math.min(System.currentTimeMillis() + this.tokenValidityInMillisecondsForRememberMe,
+                authTime + this.sessionMaxAgeInMilliseconds);
+
+        String token = Jwts.builder()
+                .setSubject(subject)
+                .setId(Long.toHexString(id))
+                .claim(TYPE_KEY, REFRESH_TYPE)
+                .claim(AUTH_TIME_KEY, TimeUnit.MILLISECONDS.toSeconds(authTime))
+                .signWith(key, SignatureAlgorithm.HS512)
+                .setExpiration(new Date(expiresAt))
+                .compact();
+        event.finish(TokenEvent.SIGN, true);
+        return token;
+    }
+
+    /**
+     * Verifies a refresh token: signature, expiry, type and session age only, no database.
+     * Returns null if it is invalid, expired, past the session limit or not a refresh token.
+     */
+    public RefreshToken resolveRefreshToken(String token) {
+        TokenEvent event = new TokenEvent();
+        event.begin();
+        RefreshToken refreshToken = null;
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Object authTime = claims.get(AUTH_TIME_KEY);
+            if (REFRESH_TYPE.equals(claims.get(TYPE_KEY)) && claims.getId() != null && claims.getExpiration() != null
+                    && authTime instanceof Number) {
+                long authTimeMillis = TimeUnit.SECONDS.toMillis(((Number) authTime).longValue());
+                //checked here as well as through exp, so lowering the limit also ends sessions already running
+                if (authTimeMillis + sessionMaxAgeInMilliseconds > System.currentTimeMillis()) {
+                    refreshToken = new RefreshToken(Long.parseUnsignedLong(claims.getId(), 16), claims.getSubject(),
+                            authTimeMillis, claims.getExpiration().getTime());
+                }
+            }
+        } catch (JwtException | IllegalArgumentException e) {
+            logInvalid(e);
+        } finally {
+            event.finish(TokenEvent.PARSE, refreshToken != null);
+        }
+        return refreshToken;
+    }
 
-        User principal = new User(claims.getSubject(), "", authorities);
+    /**
+     * Verifies the token and builds its Authentication in a single parse.
+     * Returns null if the token is invalid or expired.
+     */
+    public Authentication resolveAuthentication(String token) {
+        VerifiedToken verified = lookupVerified(token);
+        if (verified == null) {
+            try {
+                verified = verify(token);
+            } catch (JwtException | IllegalArgumentException e) {
+                logInvalid(e);
+                return null;
+            }
+            rememberVerified(token, verified);
+        }
+        return verified.toAuthentication(token);
+    }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+    public Authentication getAuthentication(String token) {
+        VerifiedToken verified = lookupVerified(token);
+        if (verified == null) {
+            verified = verify(token);
+            rememberVerified(token, verified);
+        }
+        return verified.toAuthentication(token);
     }
 
     public boolean validateToken(String authToken) {
+        return resolveAuthentication(authToken) != null;
+    }
+
+    private VerifiedToken verify(String token) {
+        TokenEvent event = new TokenEvent();
+        event.begin();
+        boolean valid = false;
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
-        } catch (io.jsonwebtoken.security.SecurityException | MalformedJwtException e) {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (REFRESH_TYPE.equals(claims.get(TYPE_KEY))) {
+                throw new UnsupportedJwtException("Refresh token used as an access token");
+            }
+
+            Collection<? extends GrantedAuthority> authorities = authorities(claims);
+
+            User principal = new User(claims.getSubject(), "", authorities);
+            Date expiration = claims.getExpiration();
+            valid = true;
+
+            return new VerifiedToken(principal, authorities, expiration == null ? Long.MAX_VALUE : expiration.getTime());
+        } finally {
+            event.finish(TokenEvent.PARSE, valid);
+        }
+    }
+
+    private static Collection<? extends GrantedAuthority> authorities(Claims claims) {
+        return Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+    }
+
+    private VerifiedToken lookupVerified(String token) {
+        if (verifiedTokenCacheSize <= 0 || token == null) return null;
+        synchronized (verifiedTokens) {
+            VerifiedToken verified = verifiedTokens.get(token);
+            if (verified == null) return null;
+            if (verified.expiresAt <= System.currentTimeMillis()) {
+                verifiedTokens.remove(token);
+                return null;
+            }
+            return verified;
+        }
+    }
+
+    private void rememberVerified(String token, VerifiedToken verified) {
+        if (verifiedTokenCacheSize <= 0) return;
+        synchronized (verifiedTokens) {
+            verifiedTokens.put(token, verified);
+        }
+    }
+
+    private void logInvalid(RuntimeException e) {
+        if (e instanceof io.jsonwebtoken.security.SecurityException || e instanceof MalformedJwtException) {
             log.info("Invalid JWT signature.");
             log.trace("Invalid JWT signature trace: {}", e);
-        } catch (ExpiredJwtException e) {
+        } else if (e instanceof ExpiredJwtException) {
             log.info("Expired JWT token.");
             log.trace("Expired JWT token trace: {}", e);
-        } catch (UnsupportedJwtException e) {
+        } else if (e instanceof UnsupportedJwtException) {
             log.info("Unsupported JWT token.");
             log.trace("Unsupported JWT token trace: {}", e);
-        } catch (IllegalArgumentException e) {
+        } else if (e instanceof IllegalArgumentException) {
             log.info("JWT token compact of handler are invalid.");
             log.trace("JWT token compact of handler are invalid trace: {}", e);
+        } else {
+            log.info("Invalid JWT token.");
+            log.trace("Invalid JWT token trace: {}", e);
+        }
+    }
+
+    /**
+     * Claims of a token whose signature has been checked. A fresh Authentication is handed out per
+     * request since UsernamePasswordAuthenticationToken is mutable.
+     */
+    private static final class VerifiedToken {
+        private final User principal;
+        private final Collection<? extends GrantedAuthority> authorities;
+        private final long expiresAt;
+
+        private VerifiedToken(User principal, Collection<? extends GrantedAuthority> authorities, long expiresAt) {
+            this.principal = principal;
+            this.authorities = authorities;
+            this.expiresAt = expiresAt;
+        }
+
+        private Authentication toAuthentication(String token) {
+            return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        }
+    }
+
+    /**
+     * The verified claims of a refresh token. Authorities are not among them: /refresh loads the
+     * user's current ones, so role changes and removed users take effect at the next refresh.
+     */
+    public static final class RefreshToken {
+        private final long id;
+        private final String subject;
+        private final long authTime;
+        private final long expiresAt;
+
+        private RefreshToken(long id, String subject, long authTime, long expiresAt) {
+            this.id = id;
+            this.subject = subject;
+            this.authTime = authTime;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        //epoch millis of the password login that started the session
+        public long getAuthTime() {
+            return authTime;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
         }
-        return false;
     }
 }
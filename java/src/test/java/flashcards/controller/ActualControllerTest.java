@@ -1,13 +1,16 @@
 package flashcards.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import flashcards.model.LoginDTO;
+import flashcards.model.RefreshTokenDTO;
 import flashcards.model.RegisterUserDTO;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
@@ -16,6 +19,15 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -43,6 +55,9 @@ public class ActualControllerTest {
     
     @Autowired
     private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
     
     private MockMvc mockMvc;
     
@@ -150,4 +165,207 @@ public class ActualControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").exists());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUsernameLookupIsCaseInsensitive() throws Exception {
+        String username = "CaseUser" + System.currentTimeMillis();
+
+        RegisterUserDTO registerDTO = new RegisterUserDTO();
+        registerDTO.setUsername(username);
+        registerDTO.setPassword("password123");
+        registerDTO.setConfirmPassword("password123");
+        registerDTO.setRole("ROLE_USER");
+
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerDTO)))
+                .andExpect(status().isCreated());
+
+        registerDTO.setUsername(username.toLowerCase());
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerDTO)))
+                .andExpect(status().is4xxClientError());
+
+        LoginDTO loginDTO = new LoginDTO();
+        loginDTO.setUsername(username.toUpperCase());
+        loginDTO.setPassword("password123");
+
+        mockMvc.perform(post("/api/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value(username));
+    }
+
+    @Test
+    public void testRefreshTokenIsRotatedAndCanBeRevoked() throws Exception {
+        String username = "refreshuser" + System.currentTimeMillis();
+        RegisterUserDTO registerDTO = new RegisterUserDTO();
+        registerDTO.setUsername(username);
+        registerDTO.setPassword("password123");
+        registerDTO.setConfirmPassword("password123");
+        registerDTO.setRole("ROLE_USER");
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerDTO)))
+                .andExpect(status().isCreated());
+
+        LoginDTO loginDTO = new LoginDTO();
+        loginDTO.setUsername(username);
+        loginDTO.setPassword("password123");
+        MvcResult loginResult = mockMvc.perform(post("/api/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").exists())
+                .andReturn();
+        JsonNode login = objectMapper.readTree(loginResult.getResponse().getContentAsString());
+        String userId = login.get("user").get("id").asText();
+
+        //a refresh token is not an access token
+        mockMvc.perform(get("/api/deck/myDecks/" + userId)
+                .header("Authorization", "Bearer " + login.get("refreshToken").asText()))
+                .andExpect(status().isUnauthorized());
+
+        MvcResult refreshResult = mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(login.get("refreshToken").asText())))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Authorization"))
+                .andReturn();
+        JsonNode refreshed = objectMapper.readTree(refreshResult.getResponse().getContentAsString());
+
+        mockMvc.perform(get("/api/deck/myDecks/" + userId)
+                .header("Authorization", "Bearer " + refreshed.get("token").asText()))
+                .andExpect(status().isOk());
+
+        //the first refresh token was rotated out, and access tokens cannot be exchanged
+        mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(login.get("refreshToken").asText())))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(refreshed.get("token").asText())))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/logout")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(refreshed.get("refreshToken").asText())))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(refreshed.get("refreshToken").asText())))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void testRefreshPicksUpRoleChangesAndRemovedUsers() throws Exception {
+        String username = "roleuser" + System.currentTimeMillis();
+        RegisterUserDTO registerDTO = new RegisterUserDTO();
+        registerDTO.setUsername(username);
+        registerDTO.setPassword("password123");
+        registerDTO.setConfirmPassword("password123");
+        registerDTO.setRole("ROLE_USER");
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerDTO)))
+                .andExpect(status().isCreated());
+
+        LoginDTO loginDTO = new LoginDTO();
+        loginDTO.setUsername(username);
+        loginDTO.setPassword("password123");
+        MvcResult loginResult = mockMvc.perform(post("/api/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginDTO)))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode login = objectMapper.readTree(loginResult.getResponse().getContentAsString());
+        mockMvc.perform(get("/api/deck").header("Authorization", "Bearer " + login.get("token").asText()))
+                .andExpect(status().isForbidden());
+
+        //the refreshed access token carries the role the user has now, not the one at login
+        jdbcTemplate.update("UPDATE users SET role = 'ROLE_ADMIN' WHERE username = ?", username);
+        MvcResult refreshResult = mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(login.get("refreshToken").asText())))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode refreshed = objectMapper.readTree(refreshResult.getResponse().getContentAsString());
+        mockMvc.perform(get("/api/deck").header("Authorization", "Bearer " + refreshed.get("token").asText()))
+                .andExpect(status().isOk());
+
+        //and a removed user gets nothing more
+        jdbcTemplate.update("DELETE FROM users WHERE username = ?", username);
+        mockMvc.perform(post("/api/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(refreshBody(refreshed.get("refreshToken").asText())))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String refreshBody(String refreshToken) throws Exception {
+        RefreshTokenDTO refreshDTO = new RefreshTokenDTO();
+        refreshDTO.setRefreshToken(refreshToken);
+        return objectMapper.writeValueAsString(refreshDTO);
+    }
+
+    @Test
+    public void testUsernameAvailability() throws Exception {
+        String username = "available" + System.currentTimeMillis();
+
+        mockMvc.perform(get("/api/register/available").param("username", "USER"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(false));
+        mockMvc.perform(get("/api/register/available").param("username", username))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(true));
+
+        RegisterUserDTO registerDTO = new RegisterUserDTO();
+        registerDTO.setUsername(username);
+        registerDTO.setPassword("password123");
+        registerDTO.setConfirmPassword("password123");
+        registerDTO.setRole("ROLE_USER");
+        mockMvc.perform(post("/api/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registerDTO)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/register/available").param("username", username))
+                .andExpect(jsonPath("$.available").value(false));
+    }
+
+    @Test
+    public void testConcurrentRegistrationsOfOneNameCreateOneUser() throws Exception {
+        String username = "racer" + System.currentTimeMillis();
+        RegisterUserDTO registerDTO = new RegisterUserDTO();
+        registerDTO.setUsername(username);
+        registerDTO.setPassword("password123");
+        registerDTO.setConfirmPassword("password123");
+        registerDTO.setRole("ROLE_USER");
+        String body = objectMapper.writeValueAsString(registerDTO);
+
+        int attempts = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(attempts);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        for (int i = 0; i < attempts; i++) {
+            statuses.add(pool.submit(() -> {
+                start.await();
+                return mockMvc.perform(post("/api/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                        .andReturn().getResponse().getStatus();
+            }));
+        }
+        start.countDown();
+        int created = 0;
+        for (Future<Integer> status : statuses) {
+            if (status.get(30, TimeUnit.SECONDS) == 201) created++;
+        }
+        pool.shutdown();
+
+        assertEquals(1, created);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users WHERE lower(username) = ?", Integer.class, username));
+    }
+}
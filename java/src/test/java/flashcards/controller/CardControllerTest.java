@@ -0,0 +1,297 @@
+package flashcards.controller;
+
+import flashcards.dao.CardDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.util.NestedServletException;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Card endpoint tests against the H2 test schema.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CardControllerTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private CardDao cardDao;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @Test
+    public void testStreamedCardsMatchTheBufferedList() throws Exception {
+        String buffered = mockMvc.perform(get("/api/deck/1/card"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        MvcResult streaming = mockMvc.perform(get("/api/deck/1/card").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].question").value("What is polymorphism?"))
+                .andExpect(content().json(buffered, true));
+    }
+
+    @Test
+    public void testStreamingRespectsDeckVisibility() throws Exception {
+        mockMvc.perform(get("/api/deck/2/card").param("stream", "true"))
+                .andExpect(status().isUnauthorized());
+
+        MvcResult owner = mockMvc.perform(get("/api/deck/2/card").param("stream", "true")
+                .with(user("user").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(owner))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void testBulkImportFromJson() throws Exception {
+        String cards = "[{\"question\":\"Q1\",\"answer\":\"A1\"},{\"question\":\"Q2\",\"answer\":\"A2\",\"deckId\":3}]";
+
+        mockMvc.perform(post("/api/deck/1/cards:bulk").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(cards))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.cardIds", hasSize(2)));
+
+        mockMvc.perform(get("/api/deck/1/card"))
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[3].question").value("Q2"));
+        mockMvc.perform(get("/api/deck/3/card"))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void testBulkImportFromCsv() throws Exception {
+        String csv = "question,answer,image_url\r\n" +
+                "\"What is 1, 2?\",\"A \"\"list\"\"\"\r\n" +
+                "Multi,\"line\nanswer\",\n";
+
+        mockMvc.perform(post("/api/deck/1/cards:bulk").with(user("user").roles("USER"))
+                .contentType("text/csv")
+                .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2));
+
+        mockMvc.perform(get("/api/deck/1/card"))
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[2].question").value("What is 1, 2?"))
+                .andExpect(jsonPath("$[2].answer").value("A \"list\""))
+                .andExpect(jsonPath("$[3].answer").value("line\nanswer"));
+    }
+
+    @Test
+    public void testBulkImportIsValidatedAndGuarded() throws Exception {
+        mockMvc.perform(post("/api/deck/1/cards:bulk").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"Q1\",\"answer\":\"A1\"},{\"question\":\"\",\"answer\":\"A2\"}]"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/deck/3/cards:bulk").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"Q1\",\"answer\":\"A1\"}]"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(get("/api/deck/1/card"))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void testCardCountFollowsBulkImportAndDelete() throws Exception {
+        mockMvc.perform(post("/api/deck/1/cards:bulk").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"question\":\"Q1\",\"answer\":\"A1\"},{\"question\":\"Q2\",\"answer\":\"A2\"}]"))
+                .andExpect(status().isOk());
+        assertEquals(4, cardCount(1));
+
+        mockMvc.perform(delete("/api/deck/1/card/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/deck/1/card/1").with(user("user").roles("USER")));
+        assertEquals(3, cardCount(1));
+        assertEquals(2, cardCount(3));
+    }
+
+    @Test
+    public void testCardListRevalidatesWithoutReadingCards() throws Exception {
+        String etag = mockMvc.perform(get("/api/deck/1/card"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals("\"cards-1-1\"", etag);
+
+        mockMvc.perform(get("/api/deck/1/card").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/deck/1/card").param("stream", "true").header("If-None-Match", "W/" + etag))
+                .andExpect(status().isNotModified());
+        verify(cardDao).getAllCards(anyLong());
+        verify(cardDao, never()).streamCards(anyLong(), any());
+
+        //any card write moves the tag on
+        mockMvc.perform(post("/api/deck/1/card").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"question\":\"Q\",\"answer\":\"A\",\"deckId\":1}"))
+                .andExpect(status().isOk());
+        String changed = mockMvc.perform(get("/api/deck/1/card").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, changed);
+    }
+
+    @Test
+    public void testCardUpdateIfMatch() throws Exception {
+        String card = "{\"cardId\":1,\"question\":\"Edited\",\"answer\":\"A\",\"deckId\":1}";
+        String etag = mockMvc.perform(put("/api/deck/1/card/1").with(user("user").roles("USER"))
+                .header("If-Match", "\"cards-1-1\"")
+                .contentType(MediaType.APPLICATION_JSON).content(card))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.question").value("Edited"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals("\"cards-1-2\"", etag);
+
+        //a second writer still holding the old tag loses
+        mockMvc.perform(put("/api/deck/1/card/2").with(user("user").roles("USER"))
+                .header("If-Match", "\"cards-1-1\"")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"cardId\":2,\"question\":\"Lost\",\"answer\":\"A\"}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("What is inheritance?", jdbcTemplate.queryForObject("SELECT question FROM card WHERE card_id = 2", String.class));
+
+        //a card from another deck is not updated through this one, and does not bump its version
+        mockMvc.perform(put("/api/deck/1/card/3").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"cardId\":3,\"question\":\"Moved\",\"answer\":\"A\"}"))
+                .andExpect(status().isNotFound());
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT version FROM deck WHERE deck_id = 1", Long.class));
+        assertEquals("What is 2 + 2?", jdbcTemplate.queryForObject("SELECT question FROM card WHERE card_id = 3", String.class));
+    }
+
+    @Test
+    public void testCardWritesAreScopedToADeckTheCallerMayModify() throws Exception {
+        //deck 3 belongs to admin
+        mockMvc.perform(put("/api/deck/3/card/5").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"question\":\"Hijacked\",\"answer\":\"A\"}"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/deck/3/card/5").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        assertEquals("What is the chemical symbol for water?", jdbcTemplate.queryForObject("SELECT question FROM card WHERE card_id = 5", String.class));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM deck WHERE deck_id = 3", Long.class));
+
+        //ids in the body do not redirect a write away from the checked deck
+        mockMvc.perform(put("/api/deck/1/card/1").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"cardId\":5,\"deckId\":3,\"question\":\"Edited\",\"answer\":\"A\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cardId").value(1));
+        mockMvc.perform(post("/api/deck/1/card").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"deckId\":3,\"question\":\"Q\",\"answer\":\"A\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deckId").value(1));
+        assertEquals("What is the chemical symbol for water?", jdbcTemplate.queryForObject("SELECT question FROM card WHERE card_id = 5", String.class));
+        assertEquals(3, cardCount(1));
+        assertEquals(2, cardCount(3));
+
+        //a card is only deleted through its own deck
+        mockMvc.perform(delete("/api/deck/1/card/5").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(content().string("false"));
+        assertEquals(2, cardCount(3));
+        assertEquals(3, cardCount(1));
+    }
+
+    @Test
+    public void testCardWritesToAPublicDeckReloadThePublicDecks() throws Exception {
+        PublicDeckCatalogCache publicCatalog = context.getBean(PublicDeckCatalogCache.class);
+        mockMvc.perform(get("/api/deck/public"))
+                .andExpect(jsonPath("$[0].deckId").value(1))
+                .andExpect(jsonPath("$[0].version").value(1));
+
+        mockMvc.perform(post("/api/deck/1/card").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"question\":\"Q\",\"answer\":\"A\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/deck/1/card/1").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"question\":\"Edited\",\"answer\":\"A\"}"))
+                .andExpect(status().isOk());
+        //deck 2 is private, so its cards are not in the catalog
+        mockMvc.perform(delete("/api/deck/2/card/3").with(user("user").roles("USER")))
+                .andExpect(status().isOk());
+        assertEquals(2, publicCatalog.getInvalidations());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publicCatalog.isStale() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        mockMvc.perform(get("/api/deck/public"))
+                .andExpect(jsonPath("$[0].deckId").value(1))
+                .andExpect(jsonPath("$[0].version").value(3));
+    }
+
+    @Test
+    public void testFailedCardInsertIsNotReportedAsSuccess() {
+        //question is NOT NULL; the error reaches the caller instead of a 200 with an empty body
+        assertThrows(NestedServletException.class, () -> mockMvc.perform(post("/api/deck/1/card").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"answer\":\"A\"}")));
+        assertEquals(2, cardCount(1));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM deck WHERE deck_id = 1", Long.class));
+    }
+
+    private int cardCount(long deckId) {
+        Integer stored = jdbcTemplate.queryForObject("SELECT card_count FROM deck WHERE deck_id = ?", Integer.class, deckId);
+        Integer actual = jdbcTemplate.queryForObject("SELECT count(*) FROM card WHERE deck_id = ?", Integer.class, deckId);
+        assertEquals(actual, stored);
+        return stored;
+    }
+}
@@ -134,7 +134,7 @@ public class CompleteWorkflowIntegrationTest {
                 .header("Authorization", "Bearer " + userToken))
                 .andExpect(status().isOk());
                 
-        String deckJson = "{\"deckName\":\"User's Deck\",\"deckDesc\":\"Created by regular user\",\"ownerId\":" + userId + ",\"deckStatus\":1,\"genre\":\"Technology\"}";
+        String deckJson = "{\"deckName\":\"User's Deck\",\"deckDesc\":\"Created by regular user\",\"ownerId\":" + userId + ",\"status\":1,\"genre\":\"Technology\"}";
         
         MvcResult deckResult = mockMvc.perform(post("/api/deck")
                 .header("Authorization", "Bearer " + userToken)
@@ -199,7 +199,7 @@ public class CompleteWorkflowIntegrationTest {
                 .header("Authorization", "Bearer " + adminToken))
                 .andExpect(status().isOk());
                 
-        String adminDeckJson = "{\"deckName\":\"Admin's Deck\",\"deckDesc\":\"Created by admin\",\"ownerId\":" + adminId + ",\"deckStatus\":3,\"genre\":\"Administration\"}";
+        String adminDeckJson = "{\"deckName\":\"Admin's Deck\",\"deckDesc\":\"Created by admin\",\"ownerId\":" + adminId + ",\"status\":3,\"genre\":\"Administration\"}";
         
         mockMvc.perform(post("/api/deck")
                 .header("Authorization", "Bearer " + adminToken)
@@ -207,7 +207,7 @@ public class CompleteWorkflowIntegrationTest {
                 .content(adminDeckJson))
                 .andExpect(status().isOk());
                 
-        String updateDeckJson = "{\"deckId\":1,\"deckName\":\"Updated by Admin\",\"deckDesc\":\"Modified by admin user\",\"ownerId\":1,\"deckStatus\":3,\"genre\":\"Updated\"}";
+        String updateDeckJson = "{\"deckId\":1,\"deckName\":\"Updated by Admin\",\"deckDesc\":\"Modified by admin user\",\"ownerId\":1,\"status\":3,\"genre\":\"Updated\"}";
         
         mockMvc.perform(put("/api/deck/1")
                 .header("Authorization", "Bearer " + adminToken)
@@ -286,7 +286,7 @@ public class CompleteWorkflowIntegrationTest {
         String user2Id = objectMapper.readTree(login2Result.getResponse().getContentAsString())
                 .get("user").get("id").asText();
                 
-        String deckJson = "{\"deckName\":\"User1's Private Deck\",\"deckDesc\":\"Only user1 should access\",\"ownerId\":" + user1Id + ",\"deckStatus\":1,\"genre\":\"Private\"}";
+        String deckJson = "{\"deckName\":\"User1's Private Deck\",\"deckDesc\":\"Only user1 should access\",\"ownerId\":" + user1Id + ",\"status\":1,\"genre\":\"Private\"}";
         
         mockMvc.perform(post("/api/deck")
                 .header("Authorization", "Bearer " + user1Token)
@@ -0,0 +1,319 @@
+package flashcards.controller;
+
+import flashcards.dao.ChunkedDeckDeleter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Deck endpoint tests against the H2 test schema.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class DeckControllerTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @Test
+    public void testCatalogPagesByCursor() throws Exception {
+        mockMvc.perform(get("/api/deck/catalog").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(1)))
+                .andExpect(jsonPath("$.decks[0].deckId").value(1))
+                .andExpect(jsonPath("$.nextCursor").value(1));
+
+        mockMvc.perform(get("/api/deck/catalog").param("limit", "1").param("after", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(1)))
+                .andExpect(jsonPath("$.decks[0].deckId").value(3))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void testCatalogSummaryCarriesOwnerCardCountAndCallerScore() throws Exception {
+        mockMvc.perform(get("/api/deck/catalog/summary").with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(2)))
+                .andExpect(jsonPath("$.decks[0].deckName").value("Public Java Deck"))
+                .andExpect(jsonPath("$.decks[0].ownerUsername").value("user"))
+                .andExpect(jsonPath("$.decks[0].cardCount").value(2))
+                .andExpect(jsonPath("$.decks[0].score").value(3))
+                .andExpect(jsonPath("$.decks[1].ownerUsername").value("admin"))
+                .andExpect(jsonPath("$.decks[1].score").value(2));
+
+        mockMvc.perform(get("/api/deck/catalog/summary").param("genre", "Science"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(1)))
+                .andExpect(jsonPath("$.decks[0].score").value(0));
+    }
+
+    @Test
+    public void testMyDeckSummariesIncludePrivateDecks() throws Exception {
+        mockMvc.perform(get("/api/deck/myDecks/1/summary").with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].deckName").value("Private Math Deck"))
+                .andExpect(jsonPath("$[1].score").value(0));
+
+        mockMvc.perform(get("/api/deck/myDecks/1/summary").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].score").value(3));
+
+        mockMvc.perform(get("/api/deck/myDecks/1/summary"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    public void testStudyReportUsesMaintainedCardCount() throws Exception {
+        jdbcTemplate.update("DELETE FROM card WHERE deck_id = 3");
+        jdbcTemplate.update("UPDATE deck SET card_count = 0 WHERE deck_id = 3");
+
+        //a studied deck that has no cards left is still reported
+        mockMvc.perform(get("/api/deck/report/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[?(@.deck_id == 1)].num_cards").value(2))
+                .andExpect(jsonPath("$[?(@.deck_id == 3)].num_cards").value(0));
+    }
+
+    @Test
+    public void testStreamedStudyReportMatchesTheBufferedList() throws Exception {
+        String buffered = mockMvc.perform(get("/api/deck/report/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(buffered.startsWith("[{\"deck_id\":"), buffered);
+
+        MvcResult streaming = mockMvc.perform(get("/api/deck/report/1").param("stream", "true")
+                .with(user("user").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().string(buffered));
+    }
+
+    @Test
+    public void testCatalogOnlyReturnsPublicDecks() throws Exception {
+        mockMvc.perform(get("/api/deck/catalog").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void testCatalogFilters() throws Exception {
+        mockMvc.perform(get("/api/deck/catalog").param("genre", "Science"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(1)))
+                .andExpect(jsonPath("$.decks[0].deckName").value("Admin Science Deck"));
+
+        mockMvc.perform(get("/api/deck/catalog").param("name", "PUBLIC j"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(1)))
+                .andExpect(jsonPath("$.decks[0].deckId").value(1));
+
+        mockMvc.perform(get("/api/deck/catalog").param("name", "%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decks", hasSize(0)));
+    }
+
+    @Test
+    public void testPostAndPutHistoryUpsertTheSameRow() throws Exception {
+        //user has no history for deck 2 yet; older clients POST, newer ones PUT
+        //on H2 this runs the MERGE variant; the PostgreSQL ON CONFLICT statement is only run against
+        //a real PostgreSQL, by the load test and StudyReportMappingBenchmark (see SqlDialect)
+        mockMvc.perform(post("/api/deck/2/history/1").with(user("user").roles("USER"))
+                .param("score", "0.9").param("correct", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3"));
+        mockMvc.perform(put("/api/deck/2/history/1").with(user("user").roles("USER"))
+                .param("score", "0.1").param("correct", "0"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+
+        assertEquals(1, count("SELECT count(*) FROM user_deck_history WHERE user_id = ? AND deck_id = ?", 1, 2));
+        assertEquals(1, count("SELECT score FROM user_deck_history WHERE user_id = ? AND deck_id = ?", 1, 2));
+        assertEquals(0, count("SELECT correct_answers FROM user_deck_history WHERE user_id = ? AND deck_id = ?", 1, 2));
+        mockMvc.perform(get("/api/deck/2/history/1").with(user("user").roles("USER")))
+                .andExpect(content().string("1"));
+    }
+
+    private int count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, args);
+    }
+
+    @Test
+    public void testDeleteDeckCascadesToCardsAndHistory() throws Exception {
+        mockMvc.perform(delete("/api/deck/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk());
+
+        assertEquals(0, count("SELECT count(*) FROM deck WHERE deck_id = ?", 1));
+        assertEquals(0, count("SELECT count(*) FROM card WHERE deck_id = ?", 1));
+        assertEquals(0, count("SELECT count(*) FROM user_deck_history WHERE deck_id = ?", 1));
+        assertEquals(2, count("SELECT count(*) FROM card WHERE deck_id = ?", 3));
+    }
+
+    @Test
+    public void testAsyncDeleteHidesDeckThenRemovesIt() throws Exception {
+        mockMvc.perform(delete("/api/deck/1").param("async", "true").with(user("user").roles("USER")))
+                .andExpect(status().isAccepted());
+
+        mockMvc.perform(get("/api/deck/catalog"))
+                .andExpect(jsonPath("$.decks", hasSize(1)));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count("SELECT count(*) FROM deck WHERE deck_id = ?", 1) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, count("SELECT count(*) FROM deck WHERE deck_id = ?", 1));
+        assertEquals(0, count("SELECT count(*) FROM card WHERE deck_id = ?", 1));
+        assertEquals(0, count("SELECT count(*) FROM user_deck_history WHERE deck_id = ?", 1));
+    }
+
+    @Test
+    public void testUnfinishedDeleteIsResumedAndTheDeckIsFrozenMeanwhile() throws Exception {
+        //as left behind by a restart or a failed chunk
+        jdbcTemplate.update("UPDATE deck SET deck_status = 0 WHERE deck_id = 1");
+
+        String deck = "{\"deckName\":\"Back\",\"deckDesc\":\"d\",\"ownerId\":1,\"status\":3,\"genre\":\"Technology\"}";
+        mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON).content(deck))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(put("/api/deck/1").with(user("admin").roles("ADMIN"))
+                .contentType(MediaType.APPLICATION_JSON).content(deck))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/deck/1").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+
+        context.getBean(ChunkedDeckDeleter.class).resumePending();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count("SELECT count(*) FROM deck WHERE deck_id = ?", 1) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, count("SELECT count(*) FROM deck WHERE deck_id = ?", 1));
+        assertEquals(0, count("SELECT count(*) FROM card WHERE deck_id = ?", 1));
+    }
+
+    @Test
+    public void testClientsCannotSetTheDeletingStatus() throws Exception {
+        mockMvc.perform(post("/api/deck").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deckName\":\"Hidden\",\"deckDesc\":\"d\",\"ownerId\":1,\"status\":0,\"genre\":\"Technology\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/deck").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deckName\":\"No status\",\"deckDesc\":\"d\",\"ownerId\":1,\"genre\":\"Technology\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deckName\":\"Hidden\",\"deckDesc\":\"d\",\"ownerId\":1,\"status\":0,\"genre\":\"Technology\"}"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(3, count("SELECT count(*) FROM deck WHERE deck_status <> ?", 0));
+        assertEquals(0, count("SELECT count(*) FROM deck WHERE deck_status = ?", 0));
+    }
+
+    @Test
+    public void testPublicDecksReloadAfterAPublicDeckIsDeleted() throws Exception {
+        PublicDeckCatalogCache publicCatalog = context.getBean(PublicDeckCatalogCache.class);
+        mockMvc.perform(get("/api/deck/public"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].deckName").value("Public Java Deck"));
+
+        mockMvc.perform(delete("/api/deck/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk());
+
+        //the reload runs in the background; readers get the previous list until it lands
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publicCatalog.isStale() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        mockMvc.perform(get("/api/deck/public"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].deckId").value(3));
+        assertEquals(1, publicCatalog.getInvalidations());
+        assertEquals(2, publicCatalog.getLoads());
+    }
+
+    @Test
+    public void testDeckETagAndIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/api/deck/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(1))
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals("\"deck-1-1\"", etag);
+        mockMvc.perform(get("/api/deck/1").header("If-None-Match", "\"deck-1-0\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        String deck = "{\"deckName\":\"Renamed\",\"deckDesc\":\"d\",\"ownerId\":1,\"status\":3,\"genre\":\"Technology\"}";
+        mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER")).header("If-Match", etag)
+                .contentType(MediaType.APPLICATION_JSON).content(deck))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"deck-1-2\""))
+                .andExpect(jsonPath("$.version").value(2));
+        //stale, another deck's, or weak: all fail the precondition and change nothing
+        for (String stale : new String[]{etag, "\"deck-3-2\"", "W/\"deck-1-2\""}) {
+            mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER")).header("If-Match", stale)
+                    .contentType(MediaType.APPLICATION_JSON).content(deck.replace("Renamed", "Lost")))
+                    .andExpect(status().isPreconditionFailed());
+        }
+        mockMvc.perform(get("/api/deck/1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deckName").value("Renamed"))
+                .andExpect(header().string("ETag", "\"deck-1-2\""));
+
+        //card writes move the deck's version too, so the card list's tag works as If-Match here
+        mockMvc.perform(delete("/api/deck/1/card/1").with(user("user").roles("USER")))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER")).header("If-Match", "\"cards-1-3\"")
+                .contentType(MediaType.APPLICATION_JSON).content(deck))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"deck-1-4\""));
+    }
+}
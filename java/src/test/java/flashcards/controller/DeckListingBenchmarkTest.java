@@ -0,0 +1,183 @@
+package flashcards.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares the HTTP requests and SQL statements needed to render one page of deck tiles:
+ * the catalog plus a history and an owner lookup per tile, against the single summary call.
+ * Statements are counted at the DataSource, so security checks are included.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class DeckListingBenchmarkTest {
+
+    private static final int PAGE_SIZE = 50;
+    private static final AtomicInteger statements = new AtomicInteger();
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ? new CountingDataSource((DataSource) bean) : bean;
+                }
+            };
+        }
+    }
+
+    static class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+    private int requests;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            long owner = i % 2 + 1;
+            jdbcTemplate.update("INSERT INTO deck (deck_status, deck_name, deck_desc, owner_id, genre) VALUES (3, ?, 'd', ?, 'Science')",
+                    "Bench " + i, owner);
+            Long deckId = jdbcTemplate.queryForObject("SELECT max(deck_id) FROM deck", Long.class);
+            jdbcTemplate.update("INSERT INTO card (question, answer, deck_id) VALUES ('q', 'a', ?), ('q2', 'a2', ?)", deckId, deckId);
+            if (i % 3 == 0) {
+                jdbcTemplate.update("INSERT INTO user_deck_history (user_id, deck_id, score, correct_answers) VALUES (1, ?, ?, 1)",
+                        deckId, i % 9 == 0 ? 3 : 1);
+            }
+        }
+    }
+
+    @Test
+    public void testSummaryPageReplacesPerTileLookups() throws Exception {
+        //warm up both paths once so cold caches do not add statements to the counts
+        renderWithPerTileLookups();
+        renderWithSummary();
+
+        statements.set(0);
+        requests = 0;
+        Map<Long, String> before = renderWithPerTileLookups();
+        int beforeRequests = requests;
+        int beforeStatements = statements.get();
+
+        statements.set(0);
+        requests = 0;
+        Map<Long, String> after = renderWithSummary();
+        int afterRequests = requests;
+        int afterStatements = statements.get();
+
+        assertEquals(PAGE_SIZE, after.size());
+        assertEquals(before, after);
+        assertEquals(1 + 2 * PAGE_SIZE, beforeRequests);
+        assertEquals(1, afterRequests);
+        assertTrue(afterStatements <= 2, "summary page ran " + afterStatements + " statements");
+        assertTrue(beforeStatements >= 2 * PAGE_SIZE);
+    }
+
+    //what Deck.vue tiles did: the catalog, then a history and an owner lookup per deck
+    private Map<Long, String> renderWithPerTileLookups() throws Exception {
+        JsonNode page = perform(get("/api/deck/catalog").param("after", "3").param("limit", String.valueOf(PAGE_SIZE)));
+        Map<Long, String> tiles = new HashMap<>();
+        for (JsonNode deck : page.get("decks")) {
+            long deckId = deck.get("deckId").asLong();
+            int score = perform(get("/api/deck/" + deckId + "/history/1")).asInt();
+            String owner = performForString(get("/api/user/" + deck.get("ownerId").asLong()));
+            tiles.put(deckId, owner + ":" + score);
+        }
+        return tiles;
+    }
+
+    private Map<Long, String> renderWithSummary() throws Exception {
+        JsonNode page = perform(get("/api/deck/catalog/summary").param("after", "3").param("limit", String.valueOf(PAGE_SIZE)));
+        Map<Long, String> tiles = new HashMap<>();
+        for (JsonNode deck : page.get("decks")) {
+            tiles.put(deck.get("deckId").asLong(), deck.get("ownerUsername").asText() + ":" + deck.get("score").asInt());
+        }
+        return tiles;
+    }
+
+    private JsonNode perform(MockHttpServletRequestBuilder request) throws Exception {
+        return objectMapper.readTree(performForString(request));
+    }
+
+    private String performForString(MockHttpServletRequestBuilder request) throws Exception {
+        requests++;
+        return mockMvc.perform(request.with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+}
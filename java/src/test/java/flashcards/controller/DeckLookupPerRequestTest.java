@@ -0,0 +1,88 @@
+package flashcards.controller;
+
+import flashcards.dao.DeckDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks that a deck row is loaded once per request, shared by the
+ * DeckSecurityService expression and the controller handler.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class DeckLookupPerRequestTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @SpyBean
+    private DeckDao deckDao;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @Test
+    public void testPublicDeckIsLoadedOnce() throws Exception {
+        mockMvc.perform(get("/api/deck/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deckName").value("Public Java Deck"));
+
+        verify(deckDao, times(1)).getDeckById(anyLong());
+    }
+
+    @Test
+    public void testPrivateDeckOwnerCheckReusesTheSameRow() throws Exception {
+        mockMvc.perform(get("/api/deck/2").with(user("user").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deckName").value("Private Math Deck"));
+
+        verify(deckDao, times(1)).getDeckById(anyLong());
+    }
+
+    @Test
+    public void testEachRequestLoadsItsOwnCopy() throws Exception {
+        mockMvc.perform(get("/api/deck/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/api/deck/1").with(user("user").roles("USER"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"deckId\":1,\"deckName\":\"Renamed\",\"deckDesc\":\"d\",\"ownerId\":1,\"status\":3,\"genre\":\"Technology\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/deck/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deckName").value("Renamed"));
+
+        verify(deckDao, times(3)).getDeckById(anyLong());
+    }
+}
@@ -0,0 +1,174 @@
+package flashcards.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import flashcards.dao.DeckDao;
+import flashcards.dao.JdbcDeckDao;
+import flashcards.model.Deck;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the cached GET /api/deck/public response.
+ */
+public class PublicDeckCatalogCacheTest {
+
+    private DeckDao deckDao;
+    private PublicDeckCatalogCache cache;
+
+    @BeforeEach
+    public void setup() {
+        deckDao = mock(DeckDao.class);
+        cache = new PublicDeckCatalogCache(deckDao, new ObjectMapper(), true, 60);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        cache.shutdown();
+    }
+
+    @Test
+    public void testRepeatedReadsQueryOnce() {
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC)).thenReturn(decks("Java"));
+
+        byte[] first = cache.getJson();
+        byte[] second = cache.getJson();
+
+        assertSame(first, second);
+        assertTrue(json(first).contains("\"deckName\":\"Java\""));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+        verify(deckDao, times(1)).getDecksByStatusId(JdbcDeckDao.PUBLIC);
+    }
+
+    @Test
+    public void testInvalidateServesThePreviousCopyUntilTheReloadLands() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC))
+                .thenReturn(decks("Java"))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return decks("Java", "SQL");
+                });
+        cache.getJson();
+
+        cache.invalidate();
+        for (int i = 0; i < 10; i++) {
+            assertFalse(json(cache.getJson()).contains("SQL"));
+        }
+        assertTrue(cache.isStale());
+
+        release.countDown();
+        awaitFresh();
+        assertTrue(json(cache.getJson()).contains("SQL"));
+        assertEquals(10, cache.getStaleHits());
+        //the invalidation and ten stale reads shared one reload
+        verify(deckDao, times(2)).getDecksByStatusId(JdbcDeckDao.PUBLIC);
+    }
+
+    @Test
+    public void testConcurrentColdReadersShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return decks("Java");
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        List<byte[]> results = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 8; i++) {
+            Thread reader = new Thread(() -> results.add(cache.getJson()));
+            reader.start();
+            readers.add(reader);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getMisses() < 8 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread reader : readers) {
+            reader.join(5000);
+        }
+
+        assertEquals(8, results.size());
+        assertTrue(results.stream().allMatch(json -> json == results.get(0)));
+        verify(deckDao, times(1)).getDecksByStatusId(JdbcDeckDao.PUBLIC);
+    }
+
+    @Test
+    public void testFailedReloadKeepsThePreviousCopy() throws Exception {
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC))
+                .thenReturn(decks("Java"))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(decks("SQL"));
+        cache.getJson();
+
+        cache.invalidate();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getFailedLoads() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(json(cache.getJson()).contains("Java"));
+
+        //that stale read started another reload
+        awaitFresh();
+        assertTrue(json(cache.getJson()).contains("SQL"));
+    }
+
+    @Test
+    public void testColdLoadFailurePropagates() {
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC)).thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertThrows(DataAccessResourceFailureException.class, () -> cache.getJson());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysQueries() {
+        cache = new PublicDeckCatalogCache(deckDao, new ObjectMapper(), false, 60);
+        when(deckDao.getDecksByStatusId(JdbcDeckDao.PUBLIC)).thenReturn(decks("Java"));
+
+        cache.getJson();
+        cache.invalidate();
+        cache.getJson();
+
+        verify(deckDao, times(2)).getDecksByStatusId(JdbcDeckDao.PUBLIC);
+        assertEquals(0, cache.getHits());
+    }
+
+    private void awaitFresh() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.isStale() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(cache.isStale());
+    }
+
+    private static List<Deck> decks(String... names) {
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            Deck deck = new Deck();
+            deck.setDeckId(i + 1);
+            deck.setDeckName(names[i]);
+            deck.setStatus(JdbcDeckDao.PUBLIC);
+            decks.add(deck);
+        }
+        return decks;
+    }
+
+    private static String json(byte[] json) {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+}
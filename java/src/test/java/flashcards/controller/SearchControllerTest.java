@@ -0,0 +1,127 @@
+package flashcards.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Search endpoint tests against the H2 test schema, which exercises the substring fallback;
+ * visibility and ranking order are the same on Postgres. The tsvector queries themselves only
+ * run against a real PostgreSQL, in SearchBenchmark with -Dbench.url.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class SearchControllerTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @Test
+    public void testAnonymousSearchOnlySeesPublicDecks() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "What"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[*].kind", containsInAnyOrder("card", "card", "card", "card")))
+                .andExpect(jsonPath("$[*].deckId", containsInAnyOrder(1, 1, 3, 3)));
+
+        mockMvc.perform(get("/api/search").param("q", "math"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void testOwnerAlsoFindsTheirPrivateDeck() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "what").with(user("user").roles("USER")))
+                .andExpect(jsonPath("$", hasSize(6)));
+
+        mockMvc.perform(get("/api/search").param("q", "math").with(user("user").roles("USER")))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].kind").value("deck"))
+                .andExpect(jsonPath("$[0].deckId").value(2))
+                .andExpect(jsonPath("$[0].title").value("Private Math Deck"))
+                .andExpect(jsonPath("$[0].cardId").doesNotExist());
+
+        //another user's private deck stays hidden
+        mockMvc.perform(get("/api/search").param("q", "math").with(user("admin").roles("ADMIN")))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void testUnlistedAndDeletingDecksAreNotListed() throws Exception {
+        jdbcTemplate.update("UPDATE deck SET deck_status = 2 WHERE deck_id = 3");
+        jdbcTemplate.update("UPDATE deck SET deck_status = 0 WHERE deck_id = 2");
+
+        mockMvc.perform(get("/api/search").param("q", "what"))
+                .andExpect(jsonPath("$[*].deckId", containsInAnyOrder(1, 1)));
+        mockMvc.perform(get("/api/search").param("q", "what").with(user("user").roles("USER")))
+                .andExpect(jsonPath("$[*].deckId", containsInAnyOrder(1, 1)));
+    }
+
+    @Test
+    public void testNameAndQuestionMatchesRankFirst() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "java"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].kind").value("deck"))
+                .andExpect(jsonPath("$[0].deckId").value(1));
+
+        //card hits carry the name of their deck
+        mockMvc.perform(get("/api/search").param("q", "polymorphism"))
+                .andExpect(jsonPath("$[0].kind").value("card"))
+                .andExpect(jsonPath("$[0].cardId").value(1))
+                .andExpect(jsonPath("$[0].deckName").value("Public Java Deck"));
+        mockMvc.perform(get("/api/search").param("q", "questions"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].detail").value("Java programming questions"));
+    }
+
+    @Test
+    public void testQueryIsValidatedAndLimited() throws Exception {
+        mockMvc.perform(get("/api/search").param("q", "  "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/search"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/search").param("q", "what").param("limit", "2"))
+                .andExpect(jsonPath("$", hasSize(2)));
+        //LIKE wildcards are matched literally
+        mockMvc.perform(get("/api/search").param("q", "%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+}
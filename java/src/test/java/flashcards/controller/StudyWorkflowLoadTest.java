@@ -0,0 +1,239 @@
+package flashcards.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * END-TO-END LOAD TEST
+ * Replays the study workflow (register, login, create a deck, add cards, browse the catalog,
+ * study, save a score, read the report) with N concurrent users against the real embedded
+ * Tomcat over HTTP. Prints throughput and p50/p95/p99 per endpoint, writes them as JSON to
+ * target/loadtest-result.json and fails if there were errors or throughput fell below
+ * loadtest.min-throughput requests per second.
+ *
+ * Skipped by the normal build; run with
+ *   mvn -Ploadtest test [-Dloadtest.users=50] [-Dloadtest.iterations=20] [-Dloadtest.min-throughput=100]
+ * against H2 by default, or a local Postgres with
+ *   -Dloadtest.datasource.url=jdbc:postgresql://localhost:5432/final_capstone -Dloadtest.datasource.username=...
+ *   -Dloadtest.datasource.password=... -Dloadtest.datasource.init=never
+ * Any application property can be passed the same way, e.g. -Dhistory.write-behind.enabled=true.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@TestPropertySource(properties = {
+    "spring.datasource.url=${loadtest.datasource.url:jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE}",
+    "spring.datasource.username=${loadtest.datasource.username:sa}",
+    "spring.datasource.password=${loadtest.datasource.password:}",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=${loadtest.datasource.init:always}"
+})
+public class StudyWorkflowLoadTest {
+
+    private static final int USERS = Integer.getInteger("loadtest.users", 20);
+    private static final int ITERATIONS = Integer.getInteger("loadtest.iterations", 10);
+    private static final int CARDS_PER_DECK = Integer.getInteger("loadtest.cards-per-deck", 5);
+    private static final double MIN_THROUGHPUT = Double.parseDouble(System.getProperty("loadtest.min-throughput", "0"));
+    private static final String RESULT_FILE = System.getProperty("loadtest.result", "target/loadtest-result.json");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    //latencies in nanoseconds per endpoint template; null while warming up
+    private Map<String, List<Long>> latencies;
+    private final AtomicLong errors = new AtomicLong();
+    private final Queue<String> errorSamples = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void testStudyWorkflowUnderLoad() throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        try {
+            List<SimulatedUser> users = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                users.add(new SimulatedUser("load_" + runId + "_" + i));
+            }
+            //registration and one warm-up pass are not measured
+            runAll(executor, users, user -> {
+                user.register();
+                user.studySession();
+            });
+            assertEquals(0, errors.get(), "warm-up failed: " + errorSamples);
+
+            latencies = new ConcurrentHashMap<>();
+            long start = System.nanoTime();
+            runAll(executor, users, user -> {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    user.studySession();
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long requests = latencies.values().stream().mapToLong(List::size).sum();
+            double throughput = requests / seconds;
+            Map<String, Object> result = report(requests, seconds, throughput);
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(RESULT_FILE), result);
+
+            assertEquals(0, errors.get(), "failed requests, e.g. " + errorSamples);
+            assertTrue(throughput >= MIN_THROUGHPUT,
+                    String.format("throughput %.1f req/s is below loadtest.min-throughput %.1f", throughput, MIN_THROUGHPUT));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runAll(ExecutorService executor, List<SimulatedUser> users, UserTask task) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (SimulatedUser user : users) {
+            futures.add(executor.submit(() -> {
+                task.run(user);
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.MINUTES);
+        }
+    }
+
+    private Map<String, Object> report(long requests, double seconds, double throughput) {
+        Map<String, Object> endpoints = new TreeMap<>();
+        System.out.printf("%n%-45s %8s %10s %10s %10s%n", "endpoint", "count", "p50 ms", "p95 ms", "p99 ms");
+        for (Map.Entry<String, List<Long>> entry : new TreeMap<>(latencies).entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", sorted.length);
+            stats.put("p50Millis", percentile(sorted, 50));
+            stats.put("p95Millis", percentile(sorted, 95));
+            stats.put("p99Millis", percentile(sorted, 99));
+            endpoints.put(entry.getKey(), stats);
+            System.out.printf("%-45s %8d %10.2f %10.2f %10.2f%n", entry.getKey(), sorted.length,
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+        }
+        System.out.printf("%d users x %d iterations: %d requests in %.2f s = %.1f req/s, %d errors%n%n",
+                USERS, ITERATIONS, requests, seconds, throughput, errors.get());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", USERS);
+        result.put("iterations", ITERATIONS);
+        result.put("cardsPerDeck", CARDS_PER_DECK);
+        result.put("requests", requests);
+        result.put("seconds", seconds);
+        result.put("throughput", throughput);
+        result.put("errors", errors.get());
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    //nearest-rank percentile, in milliseconds
+    private static double percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1e6;
+    }
+
+    private interface UserTask {
+        void run(SimulatedUser user) throws Exception;
+    }
+
+    private class SimulatedUser {
+        private final String username;
+        private String token;
+        private long userId;
+
+        private SimulatedUser(String username) {
+            this.username = username;
+        }
+
+        void register() throws Exception {
+            send("POST /api/register", "POST", "/api/register", Map.of(
+                    "username", username, "password", "password",
+                    "confirmPassword", "password", "role", "user"));
+        }
+
+        void studySession() throws Exception {
+            JsonNode login = send("POST /api/login", "POST", "/api/login",
+                    Map.of("username", username, "password", "password"));
+            if (login == null) return;
+            token = login.get("token").asText();
+            userId = login.get("user").get("id").asLong();
+
+            Map<String, Object> deck = new HashMap<>();
+            deck.put("ownerId", userId);
+            deck.put("deckName", "Deck of " + username);
+            deck.put("deckDesc", "Load test deck");
+            deck.put("genre", "Load");
+            deck.put("status", 1);
+            JsonNode created = send("POST /api/deck", "POST", "/api/deck", deck);
+            if (created == null) return;
+            long deckId = created.get("deckId").asLong();
+
+            for (int i = 0; i < CARDS_PER_DECK; i++) {
+                send("POST /api/deck/{id}/card", "POST", "/api/deck/" + deckId + "/card",
+                        Map.of("question", "Question " + i, "answer", "Answer " + i, "deckId", deckId));
+            }
+            send("GET /api/deck/catalog/summary", "GET", "/api/deck/catalog/summary", null);
+            send("GET /api/deck/{id}", "GET", "/api/deck/" + deckId, null);
+            send("GET /api/deck/{id}/card", "GET", "/api/deck/" + deckId + "/card", null);
+            send("PUT /api/deck/{id}/history/{userId}", "PUT",
+                    "/api/deck/" + deckId + "/history/" + userId + "?score=0.8", null);
+            send("GET /api/deck/{id}/history/{userId}", "GET", "/api/deck/" + deckId + "/history/" + userId, null);
+            send("GET /api/deck/report/{userId}", "GET", "/api/deck/report/" + userId, null);
+        }
+
+        //returns the parsed body, or null after recording an error
+        private JsonNode send(String endpoint, String method, String path, Object body) throws IOException, InterruptedException {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(Duration.ofSeconds(30));
+            if (token != null) {
+                request.header("Authorization", "Bearer " + token);
+            }
+            if (body != null) {
+                request.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+            } else {
+                request.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            long elapsed = System.nanoTime() - start;
+            if (latencies != null) {
+                latencies.computeIfAbsent(endpoint, k -> Collections.synchronizedList(new ArrayList<>())).add(elapsed);
+            }
+            if (response.statusCode() >= 400) {
+                errors.incrementAndGet();
+                if (errorSamples.size() < 10) {
+                    errorSamples.add(endpoint + " -> " + response.statusCode());
+                }
+                return null;
+            }
+            return response.body().length == 0 ? null : objectMapper.readTree(response.body());
+        }
+    }
+}
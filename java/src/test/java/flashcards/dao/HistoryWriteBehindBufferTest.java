@@ -0,0 +1,231 @@
+package flashcards.dao;
+
+import flashcards.model.DeckHistory;
+import flashcards.model.HistoryBacklogException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the write-behind buffer in front of user_deck_history.
+ */
+public class HistoryWriteBehindBufferTest {
+
+    private DeckDao deckDao;
+    private HistoryWriteBehindBuffer buffer;
+
+    @BeforeEach
+    public void setup() {
+        deckDao = mock(DeckDao.class);
+    }
+
+    @AfterEach
+    public void teardown() throws InterruptedException {
+        if (buffer != null) buffer.shutdown();
+    }
+
+    @Test
+    public void testDisabledBufferWritesThrough() {
+        buffer = new HistoryWriteBehindBuffer(deckDao, false, 500, 1000, 10000, 200, 5000);
+        when(deckDao.saveUserDeckHistory(1, 2, 0.9)).thenReturn(3);
+
+        assertEquals(3, buffer.save(1, 2, 0.9, null));
+        buffer.save(1, 2, 0.4, 4);
+
+        verify(deckDao).saveUserDeckHistory(1, 2, 0.4, 4);
+        assertNull(buffer.pendingScore(1, 2));
+        verify(deckDao, never()).saveUserDeckHistories(anyList());
+    }
+
+    @Test
+    public void testScoresAreCoalescedAndFlushedOnShutdown() throws InterruptedException {
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 500, 60_000, 10000, 200, 5000);
+
+        assertEquals(1, buffer.save(1, 2, 0.1, null));
+        assertEquals(3, buffer.save(1, 2, 0.9, 9));
+        buffer.save(1, 3, 0.6, 6);
+
+        assertEquals(3, buffer.pendingScore(1, 2));
+        assertEquals(2, buffer.getQueueDepth());
+        assertEquals(1, buffer.getCoalesced());
+        verifyNoInteractions(deckDao);
+
+        buffer.shutdown();
+
+        List<DeckHistory> written = flushed();
+        assertEquals(2, written.size());
+        assertEquals(3, written.get(0).getScore());
+        assertEquals(9, written.get(0).getCorrectAnswers());
+        assertEquals(3, written.get(1).getDeckId());
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    @Test
+    public void testFullBatchIsFlushedWithoutWaitingForTheInterval() {
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 3, 60_000, 10000, 200, 5000);
+
+        for (int deck = 1; deck <= 3; deck++) {
+            buffer.save(1, deck, 0.5, null);
+        }
+
+        verify(deckDao, timeout(5000)).saveUserDeckHistories(anyList());
+        assertEquals(3, flushed().size());
+        assertEquals(1, buffer.getFlushes());
+    }
+
+    @Test
+    public void testFullBufferMakesTheCallerWaitForItsRow() throws Exception {
+        //the first flush blocks until released, so the buffer can fill up behind it
+        CountDownLatch gate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            gate.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(deckDao).saveUserDeckHistories(anyList());
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 500, 60_000, 2, 50, 5000);
+
+        buffer.save(1, 1, 0.5, null);
+        buffer.save(1, 2, 0.5, null);
+        verify(deckDao, timeout(5000)).saveUserDeckHistories(anyList());
+        //the batch being written is still what a read sees
+        assertEquals(2, buffer.pendingScore(1, 1));
+
+        buffer.save(1, 3, 0.5, null);
+        buffer.save(1, 4, 0.5, null);
+        buffer.save(1, 3, 0.9, null); //same key: coalesced, no extra room needed
+        Thread caller = new Thread(() -> buffer.save(1, 5, 0.5, 5));
+        caller.start();
+        caller.join(300);
+        assertTrue(caller.isAlive(), "an over-capacity save returns only once its row is written");
+        assertEquals(1, buffer.getSynchronousWrites());
+        assertEquals(3, buffer.pendingScore(1, 3));
+
+        gate.countDown();
+        caller.join(5000);
+        assertFalse(caller.isAlive());
+        List<DeckHistory> written = flushed();
+        assertEquals(5, written.size());
+        assertEquals(5, written.get(4).getCorrectAnswers());
+        verify(deckDao, never()).saveUserDeckHistory(anyLong(), anyLong(), anyDouble(), anyInt());
+    }
+
+    @Test
+    public void testFailedFlushKeepsEveryRowAndNewerScoresWin() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch failing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                failing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                throw new QueryTimeoutException("database down");
+            }
+            return null;
+        }).when(deckDao).saveUserDeckHistories(anyList());
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 500, 50, 2, 10, 5000);
+
+        buffer.save(1, 1, 0.1, null);
+        buffer.save(1, 2, 0.1, null);
+        assertTrue(failing.await(5, TimeUnit.SECONDS));
+        //arrives while the failing batch is in flight, so it must win over the retried older row
+        buffer.save(1, 1, 0.9, null);
+        release.countDown();
+
+        verify(deckDao, timeout(5000).times(2)).saveUserDeckHistories(anyList());
+        buffer.shutdown();
+        List<DeckHistory> written = flushed();
+        //first call failed (2 rows), the retry carries both keys once, with the newer score for deck 1
+        assertEquals(4, written.size());
+        DeckHistory deck1 = written.subList(2, 4).stream().filter(h -> h.getDeckId() == 1).findFirst().get();
+        assertEquals(3, deck1.getScore());
+        assertEquals(1, buffer.getFailedFlushes());
+        assertEquals(0, buffer.getQueueDepth());
+    }
+
+    @Test
+    public void testRowThatBreaksTheForeignKeyIsDroppedAndTheOthersAreWritten() {
+        //a real H2 schema, so the bad row fails the way the database fails it
+        String url = "jdbc:h2:mem:historyfk;DB_CLOSE_DELAY=-1";
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("test-schema.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        deckDao = spy(new JdbcDeckDao(jdbcTemplate, new SqlDialect(url)));
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 4, 60_000, 10000, 200, 5000);
+
+        //deck 99 was deleted while its score was pending
+        buffer.save(2, 2, 0.5, null);
+        buffer.save(1, 99, 0.5, null);
+        buffer.save(2, 3, 0.5, null);
+        buffer.save(1, 2, 0.9, null);
+        verify(deckDao, timeout(5000).atLeast(2)).saveUserDeckHistories(anyList());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (buffer.getFlushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        assertEquals(0, buffer.getFailedFlushes());
+        assertEquals(1, buffer.getDroppedRows());
+        assertEquals(3, buffer.getFlushedRows());
+        assertEquals(0, buffer.getQueueDepth());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT score FROM user_deck_history WHERE user_id = 1 AND deck_id = 2", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT count(*) FROM user_deck_history WHERE user_id = 2 AND deck_id IN (2, 3)", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT count(*) FROM user_deck_history WHERE deck_id = 99", Integer.class));
+
+        //and the buffer keeps flushing afterwards
+        for (long deck = 1; deck <= 3; deck++) {
+            buffer.save(2, deck, 0.1, null);
+        }
+        buffer.save(2, 4, 0.1, null); //deck 4 does not exist either
+        deadline = System.currentTimeMillis() + 5000;
+        while (buffer.getFlushes() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(2, buffer.getDroppedRows());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT count(*) FROM user_deck_history WHERE user_id = 2 AND score = 1", Integer.class));
+    }
+
+    @Test
+    public void testOverCapacitySaveGivesUpAfterTheWriteTimeout() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            gate.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(deckDao).saveUserDeckHistories(anyList());
+        buffer = new HistoryWriteBehindBuffer(deckDao, true, 500, 60_000, 2, 10, 100);
+
+        buffer.save(1, 1, 0.5, null);
+        buffer.save(1, 2, 0.5, null);
+        verify(deckDao, timeout(5000)).saveUserDeckHistories(anyList());
+        buffer.save(1, 3, 0.5, null);
+        buffer.save(1, 4, 0.5, null);
+
+        //the flusher is stuck, so the caller is turned away instead of hanging, and its row is taken back
+        assertThrows(HistoryBacklogException.class, () -> buffer.save(1, 5, 0.5, null));
+        assertNull(buffer.pendingScore(1, 5));
+        assertEquals(4, buffer.getQueueDepth());
+        gate.countDown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DeckHistory> flushed() {
+        ArgumentCaptor<List<DeckHistory>> captor = ArgumentCaptor.forClass(List.class);
+        verify(deckDao, atLeastOnce()).saveUserDeckHistories(captor.capture());
+        List<DeckHistory> all = new ArrayList<>();
+        captor.getAllValues().forEach(all::addAll);
+        return all;
+    }
+}
@@ -0,0 +1,48 @@
+package flashcards.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the bucketed histogram behind the latency metrics.
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBucketsAreContiguousAndBoundTheirValues() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(value <= Histogram.upperBound(bucket), "value " + value);
+            assertTrue(bucket == 0 || value > Histogram.upperBound(bucket - 1), "value " + value);
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testQuantilesAreWithinOneBucket() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMean(), 0.001);
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getValueAtQuantile(0.5), 500_000 * 0.125);
+        assertEquals(990_000, histogram.getValueAtQuantile(0.99), 990_000 * 0.125);
+        assertEquals(1_000_000, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testResetClearsEverything() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        assertTrue(histogram.getBuckets().isEmpty());
+    }
+}
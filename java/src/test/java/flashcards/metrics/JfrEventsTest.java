@@ -0,0 +1,147 @@
+package flashcards.metrics;
+
+import flashcards.security.jwt.TokenProvider;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The custom JFR events of a JWT-authenticated request, and their cost when nothing records them.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JfrEventsTest {
+
+    private static final String[] EVENTS = {"flashcards.JwtFilter", "flashcards.Token", "flashcards.DeckSecurity", "flashcards.DaoCall"};
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+    }
+
+    @Test
+    public void testAuthenticatedRequestEmitsEvents() throws Exception {
+        Path file = Files.createTempFile("flashcards", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : EVENTS) {
+                recording.enable(event);
+            }
+            recording.start();
+            String token = tokenProvider.createToken(new UsernamePasswordAuthenticationToken("user", "password",
+                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))), false);
+            //deck 2 is private, so the check loads the deck and the caller
+            mockMvc.perform(get("/api/deck/2").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        RecordedEvent filter = only(events, "flashcards.JwtFilter");
+        assertEquals("/api/deck/2", filter.getString("requestUri"));
+        assertTrue(filter.getBoolean("authenticated"));
+
+        List<String> tokenOperations = of(events, "flashcards.Token").stream()
+                .map(e -> e.getString("operation")).collect(Collectors.toList());
+        assertEquals(List.of("sign", "parse"), tokenOperations);
+
+        RecordedEvent check = only(events, "flashcards.DeckSecurity");
+        assertEquals("canRead", check.getString("check"));
+        assertEquals(2, check.getLong("deckId"));
+        assertTrue(check.getBoolean("granted"));
+        assertEquals("/api/deck/2", check.getString("requestUri"));
+
+        RecordedEvent deckLookup = of(events, "flashcards.DaoCall").stream()
+                .filter(e -> e.getString("method").endsWith("DeckDao.getDeckById"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no getDeckById in " + of(events, "flashcards.DaoCall")));
+        assertEquals(2, deckLookup.getLong("deckId"));
+        assertEquals("/api/deck/2", deckLookup.getString("requestUri"));
+        assertFalse(deckLookup.getDuration().isNegative());
+    }
+
+    @Test
+    public void testEventsAreNearlyFreeWhenNotRecording() {
+        assertFalse(new DaoCallEvent().isEnabled());
+        assertFalse(new DeckSecurityEvent().isEnabled());
+
+        //what the interceptor does around every DAO call: two timestamps and a flag check
+        int calls = 2_000_000;
+        runDisabledEvents(calls);
+        long start = System.nanoTime();
+        int committed = runDisabledEvents(calls);
+        double nanosPerCall = (System.nanoTime() - start) / (double) calls;
+
+        assertEquals(0, committed);
+        //lenient, a DAO call is a database round trip of tens of microseconds
+        assertTrue(nanosPerCall < 1000, "disabled event costs " + nanosPerCall + " ns");
+    }
+
+    private static int runDisabledEvents(int calls) {
+        int committed = 0;
+        for (int i = 0; i < calls; i++) {
+            DaoCallEvent event = new DaoCallEvent();
+            event.begin();
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+                committed++;
+            }
+        }
+        return committed;
+    }
+
+    private static List<RecordedEvent> of(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = of(events, name);
+        assertEquals(1, matching.size(), name + " events: " + matching);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,85 @@
+package flashcards.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * DAO, security and request timings as reported by the admin metrics endpoint.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class LatencyMetricsTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private LatencyMetrics latencyMetrics;
+
+    @Autowired
+    private RequestMetricsFilter requestMetricsFilter;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .addFilters(requestMetricsFilter)
+                .apply(springSecurity())
+                .build();
+        latencyMetrics.reset();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDaoSecurityAndRequestTimingsAreRecorded() throws Exception {
+        mockMvc.perform(get("/api/deck/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/deck/1")).andExpect(status().isOk());
+
+        Map<String, Object> methods = (Map<String, Object>) latencyMetrics.snapshot(false).get("methods");
+        assertTrue(methods.containsKey("DeckSecurityService.canRead"), methods.keySet().toString());
+        assertTrue(methods.keySet().stream().anyMatch(name -> name.endsWith("DeckDao.getDeckById")), methods.keySet().toString());
+
+        mockMvc.perform(get("/api/admin/metrics").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sqlStatements").value(greaterThanOrEqualTo(2)))
+                .andExpect(jsonPath("$.methods['DeckSecurityService.canRead'].count").value(2))
+                .andExpect(jsonPath("$.requests['GET /api/deck/{id}'].latency.count").value(2))
+                .andExpect(jsonPath("$.requests['GET /api/deck/{id}'].sqlStatements.max").value(1));
+    }
+
+    @Test
+    public void testMetricsAreAdminOnly() throws Exception {
+        mockMvc.perform(get("/api/admin/metrics").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/admin/metrics").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,135 @@
+package flashcards.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Slow-query capture with a 0 ms threshold, so every statement counts as slow.
+ */
+@SpringBootTest
+@AutoConfigureWebMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.schema=classpath:test-schema.sql",
+    "spring.datasource.initialization-mode=always",
+    "jdbc.slow-query.enabled=true",
+    "jdbc.slow-query.threshold-ms=0",
+    "jdbc.slow-query.capacity=3",
+    "jdbc.slow-query.explain-sample-rate=1"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class SlowQueryLogTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders
+                .webAppContextSetup(context)
+                .apply(springSecurity())
+                .build();
+        slowQueryLog.clear();
+    }
+
+    @Test
+    public void testSlowSelectIsCapturedWithShapesRowsAndPlan() throws Exception {
+        mockMvc.perform(get("/api/deck/1/card")).andExpect(status().isOk());
+
+        SlowQuery query = slowQueryLog.getQueries().stream()
+                .filter(q -> q.getSql().contains("FROM card"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("not captured: " + slowQueryLog.getQueries()));
+        assertEquals("JdbcCardDao.getAllCards", query.getCaller());
+        assertEquals(1, query.getParameters().size());
+        assertEquals(2, query.getRows());
+
+        //the plan is filled in by a background thread
+        long deadline = System.currentTimeMillis() + 5000;
+        while (query.getPlan() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNotNull(query.getPlan());
+        assertFalse(query.getPlan().startsWith("EXPLAIN failed"), query.getPlan());
+    }
+
+    @Test
+    public void testStreamedReportIsCapturedWithItsSqlAndPlan() throws Exception {
+        MvcResult streaming = mockMvc.perform(get("/api/deck/report/1").param("stream", "true")
+                .with(user("user").roles("USER")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming)).andExpect(status().isOk());
+
+        SlowQuery query = slowQueryLog.getQueries().stream()
+                .filter(q -> q.getSql().contains("FROM user_deck_history"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("not captured: " + slowQueryLog.getQueries()));
+        assertEquals("JdbcDeckDao.streamUserStudyReport", query.getCaller());
+        assertEquals(1, query.getParameters().size());
+        assertEquals(2, query.getRows());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (query.getPlan() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNotNull(query.getPlan());
+        assertFalse(query.getPlan().startsWith("EXPLAIN failed"), query.getPlan());
+    }
+
+    @Test
+    public void testRingBufferKeepsTheNewestCaptures() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/deck/1/card")).andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/admin/slow-queries").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true))
+                .andExpect(jsonPath("$.capacity").value(3))
+                .andExpect(jsonPath("$.captured").value(greaterThanOrEqualTo(3)))
+                .andExpect(jsonPath("$.queries", hasSize(3)))
+                .andExpect(jsonPath("$.queries[0].sql").value(containsString("FROM card")));
+
+        mockMvc.perform(get("/api/admin/slow-queries").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testWritesAreCapturedButNeverExplained() throws Exception {
+        mockMvc.perform(put("/api/deck/1/history/1").param("score", "0.9").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+
+        SlowQuery write = slowQueryLog.getQueries().stream()
+                .filter(q -> q.getSql().contains("user_deck_history"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("not captured: " + slowQueryLog.getQueries()));
+        assertEquals(1, write.getRows());
+        Thread.sleep(200);
+        assertNull(write.getPlan());
+    }
+}
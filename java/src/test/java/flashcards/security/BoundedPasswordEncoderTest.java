@@ -0,0 +1,105 @@
+package flashcards.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the bounded BCrypt pool behind login and register.
+ */
+public class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    public void shutdown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    public void testHashesOnThePool() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4);
+
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(3, encoder.getHashLatency().getCount());
+        assertEquals(3, encoder.getQueueWait().getCount());
+        assertEquals(0, encoder.getRejected());
+    }
+
+    @Test
+    public void testFullQueueIsRejectedAtOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(release), 1, 2);
+
+        //one running, two queued
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread caller = new Thread(() -> encoder.encode("secret"));
+            caller.start();
+            callers.add(caller);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((encoder.getActive() < 1 || encoder.getQueueDepth() < 2) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        PasswordHashingBusyException busy = assertThrows(PasswordHashingBusyException.class, () -> encoder.matches("secret", "hash"));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertTrue(busy.getRetryAfterSeconds() >= 1);
+        assertEquals(1, encoder.getRejected());
+
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+        assertEquals(3, encoder.getHashLatency().getCount());
+        assertEquals(0, encoder.getQueueDepth());
+    }
+
+    @Test
+    public void testHashFailurePropagates() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(null));
+    }
+
+    private static final class BlockingEncoder implements PasswordEncoder {
+        private final CountDownLatch release;
+
+        private BlockingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return "hash";
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return true;
+        }
+
+        private void await() {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package flashcards.security;
+
+import flashcards.dao.UserDao;
+import flashcards.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the username -> principal cache used by DeckSecurityService.
+ */
+public class PrincipalCacheTest {
+
+    private UserDao userDao;
+
+    @BeforeEach
+    public void setup() {
+        userDao = mock(UserDao.class);
+        when(userDao.findByUsername(anyString())).thenAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            if (username.startsWith("missing")) throw new UsernameNotFoundException(username);
+            return new User((long) username.length(), username, "hash", username.startsWith("admin") ? "ROLE_ADMIN" : "ROLE_USER");
+        });
+    }
+
+    @Test
+    public void testRepeatedLookupsHitTheCache() {
+        PrincipalCache cache = new PrincipalCache(userDao, 10, 300);
+
+        PrincipalCache.Principal first = cache.get("alice");
+        PrincipalCache.Principal second = cache.get("ALICE");
+
+        assertSame(first, second);
+        assertEquals(5L, first.getId());
+        assertFalse(first.isAdmin());
+        assertTrue(cache.get("admin").isAdmin());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        verify(userDao, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        PrincipalCache cache = new PrincipalCache(userDao, 2, 300);
+
+        cache.get("a");
+        cache.get("bb");
+        cache.get("a");
+        cache.get("ccc");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("a");
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void testExpiredEntriesAreReloaded() {
+        PrincipalCache cache = new PrincipalCache(userDao, 10, 0);
+
+        cache.get("alice");
+        cache.get("alice");
+
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getEvictions());
+        verify(userDao, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    public void testInvalidateAndMissingUsers() {
+        PrincipalCache cache = new PrincipalCache(userDao, 10, 300);
+
+        cache.get("alice");
+        cache.invalidate("Alice");
+        assertEquals(0, cache.size());
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.get("missing"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testViewerIdIsZeroForAnonymousAndMissingUsers() {
+        PrincipalCache cache = new PrincipalCache(userDao, 10, 300);
+
+        assertEquals(5L, cache.viewerId(new UsernamePasswordAuthenticationToken("alice", "")));
+        assertEquals(0L, cache.viewerId(null));
+        assertEquals(0L, cache.viewerId(new AnonymousAuthenticationToken("key", "anonymousUser",
+                AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"))));
+        assertEquals(0L, cache.viewerId(new UsernamePasswordAuthenticationToken("missing", "")));
+    }
+}
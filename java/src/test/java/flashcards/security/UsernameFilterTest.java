@@ -0,0 +1,102 @@
+package flashcards.security;
+
+import flashcards.dao.UserDao;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the Bloom filter behind the username availability check.
+ */
+public class UsernameFilterTest {
+
+    private final Set<String> usernames = new HashSet<>();
+    private UserDao userDao;
+    private UsernameFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        for (int i = 0; i < 10_000; i++) {
+            usernames.add("student" + i);
+        }
+        userDao = mock(UserDao.class);
+        doAnswer(invocation -> {
+            usernames.forEach(invocation.<Consumer<String>>getArgument(0));
+            return null;
+        }).when(userDao).streamUsernames(any(Consumer.class));
+        when(userDao.findIdByUsername(anyString())).thenAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            if (!usernames.contains(username.toLowerCase())) throw new UsernameNotFoundException(username);
+            return 1;
+        });
+        filter = new UsernameFilter(userDao, 10_000, 0.01, 0);
+        filter.start();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        filter.shutdown();
+    }
+
+    @Test
+    public void testEveryExistingNameMightExist() {
+        for (String username : usernames) {
+            assertTrue(filter.mightExist(username));
+            assertTrue(filter.mightExist(username.toUpperCase()));
+        }
+        assertEquals(10_000, filter.getUsers());
+        assertEquals(7, filter.getHashes());
+    }
+
+    @Test
+    public void testNewNamesAreMostlyAnsweredWithoutTheDatabase() {
+        int unseen = 10_000;
+        for (int i = 0; i < unseen; i++) {
+            assertTrue(filter.isAvailable("newcomer" + i));
+        }
+
+        assertEquals(unseen, filter.getDefinitelyAvailable() + filter.getFalsePositives());
+        assertTrue(filter.getFalsePositives() < unseen * 0.02, filter.getFalsePositives() + " false positives");
+        verify(userDao, times((int) filter.getDatabaseChecks())).findIdByUsername(anyString());
+        assertFalse(filter.isAvailable("Student42"));
+    }
+
+    @Test
+    public void testAddedNamesAndRebuildsAreSeen() {
+        filter.add("Latecomer");
+        assertTrue(filter.mightExist("latecomer"));
+
+        //a user inserted outside the API is missed until the next rebuild
+        usernames.add("inserted-by-hand");
+        assertTrue(filter.isAvailable("inserted-by-hand"));
+        filter.rebuild();
+        assertFalse(filter.isAvailable("inserted-by-hand"));
+        //sized for at least twice the users it was built from
+        assertTrue(filter.getBits() >= 2 * 9.5 * 10_000);
+    }
+
+    @Test
+    public void testFailedStartupLoadFallsBackToTheDatabase() {
+        UserDao failing = mock(UserDao.class);
+        doThrow(new IllegalStateException("down")).when(failing).streamUsernames(any());
+        when(failing.findIdByUsername("anyone")).thenThrow(new UsernameNotFoundException("anyone"));
+        UsernameFilter cold = new UsernameFilter(failing, 100, 0.01, 0);
+        cold.start();
+
+        assertTrue(cold.mightExist("anyone"));
+        assertTrue(cold.isAvailable("anyone"));
+        assertEquals(1, cold.getDatabaseChecks());
+        cold.shutdown();
+    }
+}
@@ -0,0 +1,56 @@
+package flashcards.security.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the refresh token id denylist.
+ */
+public class RefreshTokenDenylistTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    public void testIdCanOnlyBeRevokedOnce() {
+        RefreshTokenDenylist denylist = new RefreshTokenDenylist();
+        long expiresAt = System.currentTimeMillis() + HOUR;
+
+        assertFalse(denylist.isRevoked(42));
+        assertTrue(denylist.revoke(42, expiresAt));
+        assertFalse(denylist.revoke(42, expiresAt));
+        assertTrue(denylist.isRevoked(42));
+        assertFalse(denylist.isRevoked(43));
+        assertThrows(IllegalArgumentException.class, () -> denylist.revoke(0, expiresAt));
+    }
+
+    @Test
+    public void testGrowsAndKeepsEveryLiveId() {
+        RefreshTokenDenylist denylist = new RefreshTokenDenylist();
+        long expiresAt = System.currentTimeMillis() + HOUR;
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(denylist.revoke(id * 0x1_0000_0001L, expiresAt));
+        }
+
+        assertEquals(10_000, denylist.size());
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(denylist.isRevoked(id * 0x1_0000_0001L));
+        }
+    }
+
+    @Test
+    public void testExpiredIdsAreDroppedInsteadOfGrowing() {
+        RefreshTokenDenylist denylist = new RefreshTokenDenylist();
+        long expired = System.currentTimeMillis() - 1;
+
+        for (long id = 1; id <= 10_000; id++) {
+            denylist.revoke(id, expired);
+        }
+
+        assertTrue(denylist.size() < 1024);
+        assertFalse(denylist.isRevoked(10_000));
+        //an expired id is no longer denied, and can be denylisted again
+        assertTrue(denylist.revoke(10_000, System.currentTimeMillis() + HOUR));
+    }
+}
@@ -0,0 +1,105 @@
+package flashcards.security.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for single-parse token verification and the verified-token cache.
+ */
+public class TokenProviderTest {
+
+    private static final String SECRET =
+            "T9GKvpb3oX5qqo3sd6+OJ2iqldexr32h7FHMpkgON+6yAtr2gfJOQkjt4mR9b7rCPL3wip8vgXzkr2LOpbAnitVQvHnIO2tlaQdnPo+xc10/KtcEBDMQV6nPn41+ScZ9wbvTIQn2+FUoJkQhXFcWRe4r4CbDKzZ73Z4ZyhMmJ4n8";
+
+    private TokenProvider provider(long validitySeconds, int cacheSize) {
+        return provider(validitySeconds, 3600, cacheSize);
+    }
+
+    private TokenProvider provider(long validitySeconds, long sessionMaxAgeSeconds, int cacheSize) {
+        TokenProvider tokenProvider = new TokenProvider(SECRET, validitySeconds, validitySeconds, sessionMaxAgeSeconds, cacheSize);
+        tokenProvider.afterPropertiesSet();
+        return tokenProvider;
+    }
+
+    private Authentication login(String username) {
+        return new UsernamePasswordAuthenticationToken(username, "password",
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    public void testResolveAuthenticationReturnsSubjectAndAuthorities() {
+        TokenProvider tokenProvider = provider(60, 10);
+        String token = tokenProvider.createToken(login("alice"), false);
+
+        Authentication first = tokenProvider.resolveAuthentication(token);
+        Authentication second = tokenProvider.resolveAuthentication(token);
+
+        assertEquals("alice", first.getName());
+        assertTrue(first.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+        assertNotSame(first, second);
+        assertEquals(first.getName(), second.getName());
+        assertTrue(tokenProvider.validateToken(token));
+    }
+
+    @Test
+    public void testTamperedAndExpiredTokensAreRejected() {
+        TokenProvider tokenProvider = provider(60, 10);
+        String token = tokenProvider.createToken(login("alice"), false);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(tokenProvider.resolveAuthentication(tampered));
+        assertNull(tokenProvider.resolveAuthentication("not-a-jwt"));
+
+        TokenProvider expiring = provider(-1, 10);
+        assertNull(expiring.resolveAuthentication(expiring.createToken(login("bob"), false)));
+    }
+
+    @Test
+    public void testCacheCanBeDisabled() {
+        TokenProvider tokenProvider = provider(60, 0);
+        String token = tokenProvider.createToken(login("alice"), false);
+
+        assertEquals("alice", tokenProvider.resolveAuthentication(token).getName());
+        assertEquals("alice", tokenProvider.getAuthentication(token).getName());
+    }
+
+    @Test
+    public void testRefreshTokenResolvesWithoutBeingAnAccessToken() {
+        TokenProvider tokenProvider = provider(60, 10);
+        String refreshToken = tokenProvider.createRefreshToken(login("alice"));
+
+        TokenProvider.RefreshToken resolved = tokenProvider.resolveRefreshToken(refreshToken);
+        assertEquals("alice", resolved.getSubject());
+        assertNotEquals(0, resolved.getId());
+        assertTrue(resolved.getExpiresAt() > System.currentTimeMillis());
+        assertNotEquals(resolved.getId(), tokenProvider.resolveRefreshToken(tokenProvider.createRefreshToken(login("alice"))).getId());
+
+        //neither kind of token is accepted as the other
+        assertNull(tokenProvider.resolveAuthentication(refreshToken));
+        assertNull(tokenProvider.resolveRefreshToken(tokenProvider.createToken(login("alice"), false)));
+        assertNull(tokenProvider.resolveRefreshToken("not-a-jwt"));
+    }
+
+    @Test
+    public void testRotatedRefreshTokensKeepTheSessionLimit() {
+        //refresh tokens alone would last 10 hours, the session only 1
+        TokenProvider tokenProvider = provider(36000, 3600, 10);
+        TokenProvider.RefreshToken first = tokenProvider.resolveRefreshToken(tokenProvider.createRefreshToken(login("alice")));
+        TokenProvider.RefreshToken rotated = tokenProvider.resolveRefreshToken(tokenProvider.createRefreshToken(first));
+
+        assertEquals("alice", rotated.getSubject());
+        assertEquals(first.getAuthTime(), rotated.getAuthTime());
+        assertNotEquals(first.getId(), rotated.getId());
+        assertTrue(rotated.getExpiresAt() <= first.getAuthTime() + 3600 * 1000);
+
+        //a session past the limit is over, even for a refresh token that has not expired yet
+        TokenProvider shorter = provider(36000, 0, 10);
+        assertNull(shorter.resolveRefreshToken(tokenProvider.createRefreshToken(first)));
+    }
+}
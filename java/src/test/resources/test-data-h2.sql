@@ -6,7 +6,7 @@ DROP TABLE IF EXISTS users;
 
 CREATE TABLE users (
     user_id IDENTITY PRIMARY KEY,
-    username varchar(50) NOT NULL UNIQUE,
+    username varchar_ignorecase(50) NOT NULL UNIQUE, -- H2 has no expression indexes; stands in for ix_users_username_lower
     password_hash varchar(200) NOT NULL,
     role varchar(50) NOT NULL
 );
@@ -18,16 +18,21 @@ CREATE TABLE deck (
     deck_desc varchar NOT NULL,
     owner_id int NOT NULL,
     genre varchar NOT NULL,
+    card_count int NOT NULL DEFAULT 0,
+    version bigint NOT NULL DEFAULT 1,
     CONSTRAINT fk_owner_id FOREIGN KEY (owner_id) REFERENCES users(user_id)
 );
 
+CREATE INDEX ix_deck_status_genre_id ON deck (deck_status, genre, deck_id);
+CREATE INDEX ix_deck_status_id ON deck (deck_status, deck_id);
+
 CREATE TABLE card (
     card_id IDENTITY PRIMARY KEY,
     question varchar NOT NULL,
     answer varchar NOT NULL,
     image_url varchar,
     deck_id int NOT NULL,
-    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
 );
 
 CREATE TABLE user_deck_history (
@@ -38,7 +43,7 @@ CREATE TABLE user_deck_history (
     last_updated timestamp DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT pk_user_deck_id PRIMARY KEY (user_id, deck_id),
     CONSTRAINT fk_user_id FOREIGN KEY (user_id) REFERENCES users(user_id),
-    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
 );
 
 -- Insert test users
@@ -58,4 +63,5 @@ INSERT INTO card (question, answer, deck_id) VALUES
 ('What is Java?', 'A programming language', 1),
 ('What is Spring?', 'A Java framework', 1),
 ('Private Question', 'Private Answer', 2),
-('Admin Question', 'Admin Answer', 3);
\ No newline at end of file
+('Admin Question', 'Admin Answer', 3);
+UPDATE deck SET card_count = (SELECT count(*) FROM card c WHERE c.deck_id = deck.deck_id);
@@ -9,7 +9,7 @@ DROP TABLE IF EXISTS users;
 -- Users table (PostgreSQL serial -> H2 IDENTITY)
 CREATE TABLE users (
     user_id IDENTITY PRIMARY KEY,
-    username varchar(50) NOT NULL UNIQUE,
+    username varchar_ignorecase(50) NOT NULL UNIQUE, -- H2 has no expression indexes; stands in for ix_users_username_lower
     password_hash varchar(200) NOT NULL,
     role varchar(50) NOT NULL
 );
@@ -27,9 +27,15 @@ CREATE TABLE deck (
     deck_desc varchar NOT NULL,
     owner_id int NOT NULL,
     genre varchar NOT NULL,
+    card_count int NOT NULL DEFAULT 0,
+    version bigint NOT NULL DEFAULT 1,
     CONSTRAINT fk_owner_id FOREIGN KEY (owner_id) REFERENCES users(user_id)
 );
 
+-- Public catalog keyset indexes
+CREATE INDEX ix_deck_status_genre_id ON deck (deck_status, genre, deck_id);
+CREATE INDEX ix_deck_status_id ON deck (deck_status, deck_id);
+
 -- Card table
 CREATE TABLE card (
     card_id IDENTITY PRIMARY KEY,
@@ -37,7 +43,7 @@ CREATE TABLE card (
     answer varchar NOT NULL,
     image_url varchar,
     deck_id int NOT NULL,
-    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+    CONSTRAINT fk_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
 );
 
 -- User deck history table
@@ -49,7 +55,7 @@ CREATE TABLE user_deck_history (
     last_updated timestamp DEFAULT CURRENT_TIMESTAMP,
     CONSTRAINT pk_user_deck_id PRIMARY KEY (user_id, deck_id),
     CONSTRAINT fk_udh_user_id FOREIGN KEY (user_id) REFERENCES users(user_id),
-    CONSTRAINT fk_udh_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id)
+    CONSTRAINT fk_udh_deck_id FOREIGN KEY (deck_id) REFERENCES deck(deck_id) ON DELETE CASCADE
 );
 
 -- Insert some test data for integration tests
@@ -66,6 +72,8 @@ INSERT INTO card (question, answer, deck_id) VALUES
 ('What is the chemical symbol for water?', 'H2O', 3),
 ('What planet is closest to the sun?', 'Mercury', 3);
 
+UPDATE deck SET card_count = (SELECT count(*) FROM card c WHERE c.deck_id = deck.deck_id);
+
 INSERT INTO user_deck_history (user_id, deck_id, score, correct_answers) VALUES
 (1, 1, 3, 2),
 (1, 3, 2, 1),
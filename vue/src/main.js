@@ -2,9 +2,43 @@ import Vue from 'vue'
 import App from './App.vue'
 import router from './router/index'
 import store from './store/index'
+import axios from 'axios'
+import authService from './services/AuthService'
 
 Vue.config.productionTip = false
 
+/*
+ * When the access token has expired, trade the refresh token for a new pair and retry the request
+ * once, instead of sending the user back to the login page. Refresh tokens are single use, so
+ * requests failing at the same time share one refresh.
+ */
+let refreshing = null;
+axios.interceptors.response.use(undefined, error => {
+  const request = error.config;
+  const response = error.response;
+  if (!response || response.status !== 401 || !store.state.refreshToken || request._retried
+      || ['/api/login', '/api/refresh', '/api/logout'].includes(request.url)) {
+    return Promise.reject(error);
+  }
+  if (!refreshing) {
+    refreshing = authService.refresh(store.state.refreshToken)
+      .then(refreshed => {
+        store.commit('SET_AUTH_TOKEN', refreshed.data.token);
+        store.commit('SET_REFRESH_TOKEN', refreshed.data.refreshToken);
+      })
+      .catch(refreshError => {
+        store.commit('LOGOUT');
+        throw refreshError;
+      })
+      .finally(() => { refreshing = null; });
+  }
+  return refreshing.then(() => {
+    request._retried = true;
+    request.headers['Authorization'] = `Bearer ${store.state.token}`;
+    return axios(request);
+  }, () => Promise.reject(error));
+});
+
 new Vue({
   router,
   store,
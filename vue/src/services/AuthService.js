@@ -8,6 +8,18 @@ export default {
 
   register(user) {
     return axios.post('/api/register', user)
+  },
+
+  isUsernameAvailable(username) {
+    return axios.get('/api/register/available', { params: { username } })
+  },
+
+  refresh(refreshToken) {
+    return axios.post('/api/refresh', { refreshToken })
+  },
+
+  logout(refreshToken) {
+    return axios.post('/api/logout', { refreshToken })
   }
 
 }
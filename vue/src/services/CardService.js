@@ -10,6 +10,16 @@ export default{
         return axios.post(`/api/deck/${card.deckId}/card`, card);
     },
 
+    //cards is an array of {question, answer, image}; one request and one transaction for the lot
+    addCards(deckId, cards){
+        return axios.post(`/api/deck/${deckId}/cards:bulk`, cards);
+    },
+
+    //csv is the text of a question,answer[,image_url] file
+    importCardsCsv(deckId, csv){
+        return axios.post(`/api/deck/${deckId}/cards:bulk`, csv, { headers: { 'Content-Type': 'text/csv' } });
+    },
+
     updateCard(card){
         return axios.put(`/api/deck/${card.deckId}/card/${card.cardId}`, card)
     },
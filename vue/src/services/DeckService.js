@@ -14,6 +14,26 @@ export default{
         return axios.get('/api/deck/public');
     },
 
+    //one page of public decks; pass the returned nextCursor as `after` to get the next page
+    getPublicDeckPage(after, genre, name, limit) {
+        const params = {};
+        if (after) params.after = after;
+        if (genre) params.genre = genre;
+        if (name) params.name = name;
+        if (limit) params.limit = limit;
+        return axios.get('/api/deck/catalog', { params });
+    },
+
+    //same page as getPublicDeckPage, each deck also carrying ownerUsername, cardCount and the caller's score
+    getPublicDeckSummaryPage(after, genre, name, limit) {
+        const params = {};
+        if (after) params.after = after;
+        if (genre) params.genre = genre;
+        if (name) params.name = name;
+        if (limit) params.limit = limit;
+        return axios.get('/api/deck/catalog/summary', { params });
+    },
+
     getDeckByDeckId(deckId) {
         return axios.get(`/api/deck/${deckId}`)
     },
@@ -28,6 +48,9 @@ export default{
     getMyDecks(id) {
         return axios.get(`/api/deck/myDecks/${id}`)
     },
+    getMyDeckSummaries(id) {
+        return axios.get(`/api/deck/myDecks/${id}/summary`)
+    },
 
     //Returns a num, 1 2 or 3 for score, 0 if no history
     //1 red, 2 yellow, 3 green
@@ -36,25 +59,18 @@ export default{
         return axios.get(`/api/deck/${deckId}/history/${userId}`);
     },
     //score is %, correct is optional number of correct answers
-    updateUserDeckHistory(deckId, score, correct) {//returns response data
+    //inserts or updates the user's history for the deck in one request
+    saveUserDeckHistory(deckId, score, correct) {//returns response data
         const userId = store.state.user.id;
-        //alert("PUT " + userId + " " + deckId + " " + score);
         const params = { score };
         if (correct !== undefined) params.correct = correct;
         return axios.put(`/api/deck/${deckId}/history/${userId}`,
         {}, { params });
     },
-    createUserDeckHistory(deckId, score, correct) {//returns response data
-        const userId = store.state.user.id;
-        //alert("POST " + userId + " " + deckId + " " + score);
-        const params = { score };
-        if (correct !== undefined) params.correct = correct;
-        return axios.post(`/api/deck/${deckId}/history/${userId}`,
-        {}, { params });
-    },
 
+    //streamed server side; the response is the same JSON array
     getUserStudyReport(userId) {
-        return axios.get(`/api/deck/report/${userId}`);
+        return axios.get(`/api/deck/report/${userId}`, { params: { stream: true } });
     }
 
 
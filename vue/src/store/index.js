@@ -10,6 +10,7 @@ Vue.use(Vuex)
  * exists you should set the header so that it will be attached to each request
  */
 const currentToken = localStorage.getItem('token')
+const currentRefreshToken = localStorage.getItem('refreshToken')
 const currentUser = JSON.parse(localStorage.getItem('user'));
 
 if(currentToken != null) {
@@ -19,6 +20,7 @@ if(currentToken != null) {
 export default new Vuex.Store({
   state: {
     token: currentToken || '',
+    refreshToken: currentRefreshToken || '',
     user: currentUser || {},
     decks: [],
     blankDeck: {
@@ -44,14 +46,20 @@ export default new Vuex.Store({
       localStorage.setItem('token', token);
       axios.defaults.headers.common['Authorization'] = `Bearer ${token}`
     },
+    SET_REFRESH_TOKEN(state, refreshToken) {
+      state.refreshToken = refreshToken;
+      localStorage.setItem('refreshToken', refreshToken);
+    },
     SET_USER(state, user) {
       state.user = user;
       localStorage.setItem('user',JSON.stringify(user));
     },
     LOGOUT(state) {
       localStorage.removeItem('token');
+      localStorage.removeItem('refreshToken');
       localStorage.removeItem('user');
       state.token = '';
+      state.refreshToken = '';
       state.user = {};
       axios.defaults.headers.common = {};
     },